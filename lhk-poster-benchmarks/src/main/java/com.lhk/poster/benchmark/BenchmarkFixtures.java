@@ -0,0 +1,73 @@
+package com.lhk.poster.benchmark;
+
+import com.lhk.poster.AssetCache;
+import com.lhk.poster.ImageEncoder;
+import com.lhk.poster.ImageScaler;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * 基准测试输入
+ * <p>
+ * 封面取自 sdk 内置的 poster/ 素材，按需确定性地缩放到指定分辨率；文案由固定句子重复截取。
+ * 同一参数每次得到相同的输入，结果可以离线复现和对比。
+ */
+final class BenchmarkFixtures {
+
+    static final String COVER_RESOURCE = "poster/bargain_header/bargain_header1.jpg";
+
+    private static final String ZH_SENTENCE = "世上本没有路，走的人多了，也便成了路。有些路走着走着就到了尽头，有些路走着走着就宽了。";
+    private static final String EN_SENTENCE = "Fear can hold you prisoner. Hope can set you free. "
+            + "It takes a strong man to save himself, and a great man to save another. ";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 指定宽度的封面图，类型与 JPEG 解码结果一致（TYPE_3BYTE_BGR）
+     */
+    static BufferedImage cover(int width) throws IOException {
+        BufferedImage source = AssetCache.get(COVER_RESOURCE);
+        int height = source.getHeight() * width / source.getWidth();
+        BufferedImage scaled = ImageScaler.scale(source, width, height, ImageScaler.Interpolation.BICUBIC);
+        BufferedImage cover = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = cover.createGraphics();
+        try {
+            graphics.drawImage(scaled, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return cover;
+    }
+
+    /**
+     * 把指定宽度的封面写入临时 JPEG 文件，JVM 退出时删除
+     */
+    static File coverFile(int width) throws IOException {
+        File file = File.createTempFile("bench_cover_" + width + '_', ".jpg");
+        file.deleteOnExit();
+        Files.write(file.toPath(), ImageEncoder.jpeg().encode(cover(width)));
+        return file;
+    }
+
+    static String zhCaption(int length) {
+        return repeat(ZH_SENTENCE, length);
+    }
+
+    static String enCaption(int length) {
+        return repeat(EN_SENTENCE, length).trim();
+    }
+
+    private static String repeat(String sentence, int length) {
+        StringBuilder builder = new StringBuilder(length + sentence.length());
+        while (builder.length() < length) {
+            builder.append(sentence);
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package com.lhk.poster.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试入口
+ * <p>
+ * 接受 JMH 的全部命令行参数（例如只运行 {@code LineFeed}、{@code -f 1}、{@code -rf json}），
+ * 在此基础上默认启用 GC 分析器（报告 gc.alloc.rate.norm 等分配指标），默认测量每次操作的平均耗时（微秒）。
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        // 命令行未指定的项使用这里的默认值，命令行指定的项优先
+        OptionsBuilder builder = new OptionsBuilder();
+        if (commandLine.getIncludes().isEmpty()) {
+            builder.include(BenchmarkMain.class.getPackage().getName() + ".*");
+        }
+        if (commandLine.getBenchModes().isEmpty()) {
+            builder.mode(Mode.AverageTime);
+        }
+        if (!commandLine.getTimeUnit().hasValue()) {
+            builder.timeUnit(TimeUnit.MICROSECONDS);
+        }
+        if (!commandLine.getWarmupIterations().hasValue()) {
+            builder.warmupIterations(3);
+        }
+        if (!commandLine.getWarmupTime().hasValue()) {
+            builder.warmupTime(TimeValue.seconds(2));
+        }
+        if (!commandLine.getMeasurementIterations().hasValue()) {
+            builder.measurementIterations(5);
+        }
+        if (!commandLine.getMeasurementTime().hasValue()) {
+            builder.measurementTime(TimeValue.seconds(2));
+        }
+        if (!commandLine.getForkCount().hasValue()) {
+            builder.forks(2);
+        }
+        Options options = builder
+                .addProfiler(GCProfiler.class)
+                // 与服务端一致：无界面环境，文件编码固定为 UTF-8
+                .jvmArgsAppend("-Djava.awt.headless=true", "-Dfile.encoding=UTF-8")
+                .parent(commandLine)
+                .build();
+        new Runner(options).run();
+    }
+}
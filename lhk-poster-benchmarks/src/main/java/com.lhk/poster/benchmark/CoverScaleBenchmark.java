@@ -0,0 +1,67 @@
+package com.lhk.poster.benchmark;
+
+import com.lhk.poster.AssetCache;
+import com.lhk.poster.ImageScaler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * 封面缩放到海报宽度：原先 PosterUtil.drawImage 中不带插值提示的 drawImage（最近邻）对比 {@link ImageScaler}
+ */
+@State(Scope.Thread)
+public class CoverScaleBenchmark {
+
+    /**
+     * 封面宽度：普通配图、1200 万像素、4800 万像素手机照片
+     */
+    @Param({"1080", "4000", "8000"})
+    public int coverWidth;
+
+    private BufferedImage cover;
+    private BufferedImage canvas;
+    private int targetWidth;
+    private int targetHeight;
+
+    @Setup
+    public void setUp() throws IOException {
+        cover = BenchmarkFixtures.cover(coverWidth);
+        BufferedImage bgImage = AssetCache.get(AssetCache.DEFAULT_BG);
+        canvas = AssetCache.copyOf(bgImage);
+        // 默认模板封面左右各留 25 像素
+        targetWidth = bgImage.getWidth() - 50;
+        targetHeight = cover.getHeight() * targetWidth / cover.getWidth();
+    }
+
+    @Benchmark
+    public BufferedImage drawImageNearest() {
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            graphics.drawImage(cover, 25, 25, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return canvas;
+    }
+
+    @Benchmark
+    public BufferedImage scalerBilinear() {
+        return ImageScaler.scale(cover, targetWidth, targetHeight, ImageScaler.Interpolation.BILINEAR);
+    }
+
+    @Benchmark
+    public BufferedImage scalerBicubic() {
+        return ImageScaler.scale(cover, targetWidth, targetHeight, ImageScaler.Interpolation.BICUBIC);
+    }
+
+    @Benchmark
+    public BufferedImage scalerLanczos3() {
+        return ImageScaler.scale(cover, targetWidth, targetHeight, ImageScaler.Interpolation.LANCZOS3);
+    }
+}
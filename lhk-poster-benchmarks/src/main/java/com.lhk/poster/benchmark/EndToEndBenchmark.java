@@ -0,0 +1,43 @@
+package com.lhk.poster.benchmark;
+
+import com.lhk.poster.PosterUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 端到端：本地封面文件解码、排版绘制、JPEG 编码，即 createFromLocalImage 的完整路径
+ */
+@State(Scope.Thread)
+public class EndToEndBenchmark {
+
+    @Param({"1080", "4000"})
+    public int coverWidth;
+
+    private String coverPath;
+    private String zh;
+    private String en;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup
+    public void setUp() throws IOException {
+        File coverFile = BenchmarkFixtures.coverFile(coverWidth);
+        coverPath = coverFile.getAbsolutePath();
+        zh = BenchmarkFixtures.zhCaption(64);
+        en = BenchmarkFixtures.enCaption(128);
+        outputStream = new ByteArrayOutputStream(256 * 1024);
+    }
+
+    @Benchmark
+    public int createFromLocalImage() throws IOException {
+        outputStream.reset();
+        PosterUtil.createFromLocalImage(coverPath, zh, en, outputStream);
+        return outputStream.size();
+    }
+}
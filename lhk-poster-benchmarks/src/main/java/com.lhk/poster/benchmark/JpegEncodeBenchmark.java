@@ -0,0 +1,56 @@
+package com.lhk.poster.benchmark;
+
+import com.lhk.poster.ImageEncoder;
+import com.lhk.poster.PosterUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 整张海报的 JPEG 编码：ImageIO.write 与复用 ImageWriter 的 {@link ImageEncoder}
+ */
+@State(Scope.Thread)
+public class JpegEncodeBenchmark {
+
+    private final ImageEncoder progressive = ImageEncoder.builder()
+            .quality(0.8f)
+            .progressive(true)
+            .build();
+
+    private BufferedImage poster;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup
+    public void setUp() throws IOException {
+        poster = PosterUtil.render(BenchmarkFixtures.cover(1080), BenchmarkFixtures.zhCaption(64),
+                BenchmarkFixtures.enCaption(128));
+        outputStream = new ByteArrayOutputStream(256 * 1024);
+    }
+
+    @Benchmark
+    public int imageIoWrite() throws IOException {
+        outputStream.reset();
+        ImageIO.write(poster, "jpg", outputStream);
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public int encoderDefault() throws IOException {
+        outputStream.reset();
+        ImageEncoder.jpeg().encode(poster, outputStream);
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public int encoderProgressive() throws IOException {
+        outputStream.reset();
+        progressive.encode(poster, outputStream);
+        return outputStream.size();
+    }
+}
@@ -0,0 +1,48 @@
+package com.lhk.poster.benchmark;
+
+import com.lhk.poster.FontMetricsTable;
+import com.lhk.poster.FontRegistry;
+import com.lhk.poster.FontUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.Font;
+
+/**
+ * 中英文断行，文案长度覆盖标题（16）、常见摘要（64 ~ 256）到长文（1024）
+ */
+@State(Scope.Thread)
+public class LineFeedBenchmark {
+
+    /**
+     * 与默认模板正文一致：28 号字，可用宽度 650 像素
+     */
+    private static final int MAX_WIDTH = 650;
+
+    @Param({"16", "64", "256", "1024"})
+    public int length;
+
+    private FontMetricsTable metrics;
+    private String zh;
+    private String en;
+
+    @Setup
+    public void setUp() {
+        metrics = FontRegistry.getMetrics(FontRegistry.getFont(Font.PLAIN, 28));
+        zh = BenchmarkFixtures.zhCaption(length);
+        en = BenchmarkFixtures.enCaption(length);
+    }
+
+    @Benchmark
+    public String zhLineFeed() {
+        return FontUtil.makeZhLineFeed(zh, metrics, MAX_WIDTH);
+    }
+
+    @Benchmark
+    public String enLineFeed() {
+        return FontUtil.makeEnLineFeed(en, metrics, MAX_WIDTH);
+    }
+}
@@ -0,0 +1,49 @@
+package com.lhk.poster.benchmark;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.lhk.QR.LinkToQRCodePosterToBase64;
+import com.lhk.QR.QrCodeRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 二维码生成：getQrCodeImage（缓存命中后展开为 RGB 副本）、共享缓存图以及不经缓存的完整编码
+ */
+@State(Scope.Thread)
+public class QrCodeBenchmark {
+
+    @Param({"110", "300"})
+    public int size;
+
+    private String link;
+    private long counter;
+
+    @Setup
+    public void setUp() {
+        link = "https://www.example.com/activity/poster?id=20231018&from=benchmark";
+    }
+
+    @Benchmark
+    public BufferedImage getQrCodeImage() throws WriterException {
+        return LinkToQRCodePosterToBase64.getQrCodeImage(link, size, size);
+    }
+
+    @Benchmark
+    public BufferedImage getSharedQrCodeImage() throws WriterException {
+        return LinkToQRCodePosterToBase64.getSharedQrCodeImage(link, size, size);
+    }
+
+    /**
+     * 每次内容都不同，相当于缓存全部未命中
+     */
+    @Benchmark
+    public BufferedImage renderUncached() throws WriterException {
+        return QrCodeRenderer.render(link + (counter++ & 1023), size, size, ErrorCorrectionLevel.H, 0);
+    }
+}
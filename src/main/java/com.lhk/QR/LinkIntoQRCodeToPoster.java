@@ -2,26 +2,23 @@
 
 package com.lhk.QR;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.lhk.poster.ImageEncoder;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * 链接生成二维码 + 海报生成（基于ZXing）
+ * <p>
+ * 同一模板贴用户专属二维码时请直接使用 {@link QrCodeOverlay}，批量贴码使用 {@link QrCodeBatchStamper}。
  */
 public class LinkIntoQRCodeToPoster {
     public static void main(String[] args) {
@@ -42,7 +39,7 @@ public class LinkIntoQRCodeToPoster {
             // 将二维码贴到海报上
             PosterGenerator.pasteCodeOnPoster(posterPath, outputPath, qrCodeImage, x, y);
  
-            System.out.println("海报生成成功！");
+            System.out.println("海报生成成功：" + outputPath);
         } catch (WriterException | IOException e) {
             e.printStackTrace();
         }
@@ -53,26 +50,46 @@ public class LinkIntoQRCodeToPoster {
  * 将二维码贴到海报上。
  */
 class PosterGenerator {
+
+    /**
+     * 最近使用的海报模板，同一模板文件未修改时不再重新读取和解码
+     */
+    private static volatile ResidentTemplate lastTemplate;
+
     public static void pasteCodeOnPoster(String posterPath, String outputPath, BufferedImage codeImage, int x, int y) throws IOException {
-        // 读取海报图片
-        File posterFile = new File(posterPath);
-        BufferedImage posterImage = ImageIO.read(posterFile);
+        QrCodeOverlay overlay = overlayOf(Paths.get(posterPath),
+                new Rectangle(x, y, codeImage.getWidth(), codeImage.getHeight()));
+        // 在模板副本上贴码，只编码一次直接写入文件
+        BufferedImage posterImage = overlay.stamp(codeImage);
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(Paths.get(outputPath)))) {
+            ImageEncoder.png().encode(posterImage, outputStream);
+        }
+    }
 
-        // 创建一个 Graphics2D 对象，用于在海报上绘制二维码或条形码
-        Graphics2D g2d = posterImage.createGraphics();
-        g2d.drawImage(codeImage, x, y, null);
-        g2d.dispose();
+    /**
+     * 模板未变时复用常驻的模板，只更换二维码位置
+     */
+    private static QrCodeOverlay overlayOf(Path posterPath, Rectangle anchor) throws IOException {
+        long lastModified = Files.getLastModifiedTime(posterPath).toMillis();
+        ResidentTemplate template = lastTemplate;
+        if (template != null && template.path.equals(posterPath) && template.lastModified == lastModified) {
+            return template.overlay.withAnchors(anchor);
+        }
+        QrCodeOverlay overlay = QrCodeOverlay.load(posterPath, anchor);
+        lastTemplate = new ResidentTemplate(posterPath, lastModified, overlay);
+        return overlay;
+    }
 
-        // 保存生成的海报
-        File outputFile = new File(outputPath);
-        ImageIO.write(posterImage, "png", outputFile);
+    private static final class ResidentTemplate {
+        private final Path path;
+        private final long lastModified;
+        private final QrCodeOverlay overlay;
 
-        // 将海报转换为Base64格式
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        ImageIO.write(posterImage, "jpg", outputStream);
-        byte[] posterData = outputStream.toByteArray();
-        String base64Poster = Base64.getEncoder().encodeToString(posterData);
-        System.out.println("data:image/jpeg;base64," + base64Poster);
+        ResidentTemplate(Path path, long lastModified, QrCodeOverlay overlay) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.overlay = overlay;
+        }
     }
 }
 
@@ -80,12 +97,15 @@ class PosterGenerator {
  * 生成二维码图片。
  */
 class QRCodeGenerator {
+    /**
+     * 与 QRCodeWriter 的默认留白一致
+     */
+    private static final int QUIET_ZONE_SIZE = 4;
+
+    /**
+     * 容错级别 H、默认留白 4 个模块，结果取自 {@link QrCodeCache}（只读共享）
+     */
     public static BufferedImage generateQRCode(String text, int width, int height) throws WriterException {
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        Map<EncodeHintType, Object> hints = new HashMap<>();
-        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height, hints);
-        return MatrixToImageWriter.toBufferedImage(bitMatrix);
+        return QrCodeCache.getDefault().get(text, width, height, ErrorCorrectionLevel.H, QUIET_ZONE_SIZE);
     }
 }
\ No newline at end of file
@@ -1,22 +1,20 @@
 package com.lhk.QR;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
-import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.lhk.poster.DataUris;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
-import java.util.Base64;
 
 /**
  * 链接生成二维码 + 海报生成 + Base64（基于ZXing）
+ * <p>
+ * 每次调用都会下载并解码海报模板，同一模板批量生成专属二维码海报时请使用 {@link QrCodeBatchStamper}。
  */
 public class LinkToQRCodePosterToBase64 {
 
@@ -59,27 +57,10 @@ public class LinkToQRCodePosterToBase64 {
      */
     public static String getPostQrCode(String posterImageLink, String qrCodeLink, int qrCodeWidth, int qrCodeHeight, int qrCodeX, int qrCodeY) {
         try {
-            // 下载海报图片
-            URL posterURL = new URL(posterImageLink);
-            BufferedImage posterImage = ImageIO.read(posterURL);
-            // 将海报图片转换为RGB色彩模式
-            posterImage = convertToRGB(posterImage);
+            BufferedImage posterImage = pastePosterQrCode(posterImageLink, qrCodeLink, qrCodeWidth, qrCodeHeight, qrCodeX, qrCodeY);
 
-            BufferedImage qrCodeImage = getQrCodeImage(qrCodeLink, qrCodeWidth, qrCodeHeight);
-
-            // 将二维码嵌入到海报中
-            Graphics2D graphics = posterImage.createGraphics();
-            graphics.drawImage(qrCodeImage, qrCodeX, qrCodeY, null);
-            graphics.dispose();
-
-            // 将海报转换为Base64格式
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(posterImage, "jpg", outputStream);
-            byte[] posterData = outputStream.toByteArray();
-            String base64Poster = Base64.getEncoder().encodeToString(posterData);
-
-            // 添加Base64前缀
-            base64Poster = "data:image/jpeg;base64," + base64Poster;
+            // 将海报直接编码为带前缀的 Base64 字符串（JPEG 编码输出经 Base64 编码流写入，不产生中间字节数组）
+            String base64Poster = DataUris.toJpegString(posterImage);
 
             // 输出Base64格式的海报图片
             return base64Poster;
@@ -89,6 +70,34 @@ public class LinkToQRCodePosterToBase64 {
         return null;
     }
 
+    /**
+     * 获取海报二维码图片，以 data URI 形式直接写入输出流（例如 HTTP 响应体）
+     * @param outputStream 目标输出流（不会被关闭）
+     * @see #getPostQrCode(String, String, int, int, int, int)
+     */
+    public static void writePostQrCode(String posterImageLink, String qrCodeLink, int qrCodeWidth, int qrCodeHeight,
+                                       int qrCodeX, int qrCodeY, OutputStream outputStream) throws IOException, WriterException {
+        BufferedImage posterImage = pastePosterQrCode(posterImageLink, qrCodeLink, qrCodeWidth, qrCodeHeight, qrCodeX, qrCodeY);
+        DataUris.writeJpeg(posterImage, outputStream);
+    }
+
+    private static BufferedImage pastePosterQrCode(String posterImageLink, String qrCodeLink, int qrCodeWidth, int qrCodeHeight,
+                                                   int qrCodeX, int qrCodeY) throws IOException, WriterException {
+        // 下载海报图片
+        URL posterURL = new URL(posterImageLink);
+        BufferedImage posterImage = ImageIO.read(posterURL);
+        // 将海报图片转换为RGB色彩模式
+        posterImage = convertToRGB(posterImage);
+
+        BufferedImage qrCodeImage = getSharedQrCodeImage(qrCodeLink, qrCodeWidth, qrCodeHeight);
+
+        // 将二维码嵌入到海报中
+        Graphics2D graphics = posterImage.createGraphics();
+        graphics.drawImage(qrCodeImage, qrCodeX, qrCodeY, null);
+        graphics.dispose();
+        return posterImage;
+    }
+
     /**
      * 根据跳转链接获取二维码图片
      * @param qrCodeLink 二维码跳转链接
@@ -97,41 +106,20 @@ public class LinkToQRCodePosterToBase64 {
      * @return 二维码图片
      */
     public static BufferedImage getQrCodeImage(String qrCodeLink, int qrCodeWidth, int qrCodeHeight) throws WriterException {
-        // 生成二维码
-        MultiFormatWriter multiFormatWriter = new MultiFormatWriter();
-        // 设置二维码参数
-        BitMatrix bitMatrix = multiFormatWriter.encode(qrCodeLink, BarcodeFormat.QR_CODE, qrCodeWidth, qrCodeHeight,
-                getDecodeHintType());
-        BufferedImage qrCodeImage = toBufferedImage(bitMatrix);
-        // 将二维码图片转换为RGB色彩模式
-        qrCodeImage = convertToRGB(qrCodeImage);
-        return qrCodeImage;
+        // 从缓存获取 1 位黑白二维码，再展开为调用方可修改的 RGB 副本
+        return QrCodeRenderer.toRgb(getSharedQrCodeImage(qrCodeLink, qrCodeWidth, qrCodeHeight));
     }
 
-    // 获取二维码的编码参数
-    private static java.util.Map<EncodeHintType, Object> getDecodeHintType() {
-        java.util.Map<EncodeHintType, Object> hints = new java.util.HashMap<>();
-        // 设置字符集
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-        // 设置容错级别为高
-        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
-        // 设置边距为1
-        hints.put(EncodeHintType.MARGIN, 0);
-        return hints;
-    }
-
-    // 将BitMatrix转换为BufferedImage
-    private static BufferedImage toBufferedImage(BitMatrix matrix) {
-        int width = matrix.getWidth();
-        int height = matrix.getHeight();
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                // 设置二维码的颜色
-                image.setRGB(x, y, matrix.get(x, y) ? Color.BLACK.getRGB() : Color.WHITE.getRGB());
-            }
-        }
-        return image;
+    /**
+     * 根据跳转链接获取缓存的二维码图片，适用于只需绘制到海报上的场景
+     * @param qrCodeLink 二维码跳转链接
+     * @param qrCodeWidth 二维码宽度
+     * @param qrCodeHeight 二维码高度
+     * @return 只读共享的 1 位黑白二维码图片
+     */
+    public static BufferedImage getSharedQrCodeImage(String qrCodeLink, int qrCodeWidth, int qrCodeHeight) throws WriterException {
+        // 容错级别为高，边距为0
+        return QrCodeCache.getDefault().get(qrCodeLink, qrCodeWidth, qrCodeHeight, ErrorCorrectionLevel.H, 0);
     }
 
     // 将图片转换为RGB色彩模式
@@ -154,12 +142,8 @@ public class LinkToQRCodePosterToBase64 {
      */
     public static String convertImageToBase64(BufferedImage image) {
         try {
-            // 1. 将BufferedImage写入ByteArrayOutputStream
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", baos); // 可以选择其他格式，如"jpg"
-            byte[] imageBytes = baos.toByteArray();
-            // 2. 将字节数组编码为Base64字符串
-            return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageBytes);
+            // PNG 编码输出经 Base64 编码流直接写成 data URI
+            return DataUris.toPngString(image);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,344 @@
+package com.lhk.QR;
+
+import com.google.zxing.WriterException;
+import com.lhk.poster.AssetCache;
+import com.lhk.poster.ImageEncoder;
+import com.lhk.poster.ImageFormat;
+import com.lhk.poster.PosterMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 批量贴码：同一模板、不同二维码内容（例如给每个用户发放专属邀请海报）
+ * <p>
+ * 所有线程共享同一份只读的模板。不透明模板，以及输出 JPEG 时预先合成到白色背景上的模板转为 3 字节 BGR，
+ * 编码时不再逐张去除透明通道，也省去逐像素拆分 int 的开销。
+ * 实例持有一组与模板等大的画布，数量不超过同时贴码的线程数，每块只在创建时整图复制；
+ * 之后每张海报借出一块画布，只把上一张绘制过二维码的行从模板拷回，再画上新的二维码并编码，用完归还，
+ * 编码在线程池上并行执行。结果只以编码后的字节离开画布，close() 后画布随实例回收，不会滞留在共享线程池的线程上。
+ * 同时在途的海报数受 maxInFlight 限制，输入序列按需拉取；结果可按完成顺序或输入顺序回调。
+ */
+public class QrCodeBatchStamper implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(QrCodeBatchStamper.class);
+
+    private final QrCodeOverlay overlay;
+    private final ImageEncoder encoder;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final boolean ownsExecutor;
+    private final BufferedImage template;
+    /**
+     * 空闲的画布，close() 时清空
+     */
+    private final Queue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * 创建自带线程池的批量贴码器，close() 时关闭线程池
+     *
+     * @param threads 贴码和编码的线程数，最大在途数为其8倍
+     */
+    public QrCodeBatchStamper(QrCodeOverlay overlay, ImageEncoder encoder, int threads) {
+        this(overlay, encoder, newExecutor(threads), threads * 8, true);
+    }
+
+    /**
+     * 使用调用方提供的线程池，close() 时不会关闭它
+     *
+     * @param maxInFlight 最大在途海报数（背压上限），按输入顺序回调时也是等待回调的结果数上限
+     */
+    public QrCodeBatchStamper(QrCodeOverlay overlay, ImageEncoder encoder, Executor executor, int maxInFlight) {
+        this(overlay, encoder, executor, maxInFlight, false);
+    }
+
+    private QrCodeBatchStamper(QrCodeOverlay overlay, ImageEncoder encoder, Executor executor, int maxInFlight,
+                               boolean ownsExecutor) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("最大在途数必须大于0");
+        }
+        this.overlay = Objects.requireNonNull(overlay);
+        this.encoder = Objects.requireNonNull(encoder);
+        this.executor = Objects.requireNonNull(executor);
+        this.maxInFlight = maxInFlight;
+        this.ownsExecutor = ownsExecutor;
+        this.template = toBgr(overlay.getTemplate(), encoder.getEffectiveFormat() == ImageFormat.JPEG);
+    }
+
+    /**
+     * 批量贴码，每完成一张（成功或失败）即回调一次 sink，方法在全部完成后返回。
+     * <p>
+     * sink 的调用是串行的，调用方无需自行加锁；结果按完成顺序到达，可通过 {@link StampResult#getIndex()} 对应回输入。
+     * 单张的失败（包括线程池拒绝）都以 {@link StampResult#getError()} 回调；输入序列本身抛出异常时，
+     * 等在途的贴码全部回调后再抛出。
+     *
+     * @param payloads 二维码内容序列，按需拉取
+     * @param sink 结果回调
+     * @return 处理的海报数量
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    public long stampAll(Iterator<String> payloads, Consumer<StampResult> sink) throws InterruptedException {
+        return run(payloads, sink, false);
+    }
+
+    /**
+     * 批量贴码
+     *
+     * @see #stampAll(Iterator, Consumer)
+     */
+    public long stampAll(Stream<String> payloads, Consumer<StampResult> sink) throws InterruptedException {
+        return stampAll(payloads.iterator(), sink);
+    }
+
+    /**
+     * 批量贴码，结果严格按输入顺序回调；先完成的结果等待前面的结果，等待中的结果同样占用在途额度
+     *
+     * @see #stampAll(Iterator, Consumer)
+     */
+    public long stampAllInOrder(Iterator<String> payloads, Consumer<StampResult> sink) throws InterruptedException {
+        return run(payloads, sink, true);
+    }
+
+    /**
+     * 批量贴码，结果按输入顺序回调
+     *
+     * @see #stampAllInOrder(Iterator, Consumer)
+     */
+    public long stampAllInOrder(Stream<String> payloads, Consumer<StampResult> sink) throws InterruptedException {
+        return stampAllInOrder(payloads.iterator(), sink);
+    }
+
+    /**
+     * 借一块空闲画布贴码并编码一张，没有空闲画布时新建
+     *
+     * @throws WriterException 内容无法编码为二维码
+     * @throws IOException 编码失败
+     */
+    public byte[] stampToBytes(String payload) throws WriterException, IOException {
+        Workspace workspace = workspaces.poll();
+        if (workspace == null) {
+            workspace = new Workspace(template);
+        }
+        try {
+            BufferedImage canvas = workspace.stamp(overlay, payload);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 * 1024);
+            encoder.encode(canvas, outputStream);
+            return outputStream.toByteArray();
+        } finally {
+            if (!closed) {
+                workspaces.offer(workspace);
+            }
+        }
+    }
+
+    /**
+     * 释放画布；自带线程池时一并关闭
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workspaces.clear();
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private long run(Iterator<String> payloads, Consumer<StampResult> sink, boolean ordered) throws InterruptedException {
+        Semaphore permits = new Semaphore(maxInFlight);
+        Emitter emitter = new Emitter(sink, permits, ordered);
+        long index = 0;
+        while (true) {
+            permits.acquire();
+            String payload;
+            try {
+                if (!payloads.hasNext()) {
+                    permits.release();
+                    break;
+                }
+                payload = payloads.next();
+            } catch (RuntimeException | Error e) {
+                // 输入序列本身失败：等在途的贴码全部回调后再抛出，方法返回后不再调用 sink
+                permits.release();
+                permits.acquireUninterruptibly(maxInFlight);
+                permits.release(maxInFlight);
+                throw e;
+            }
+            long current = index++;
+            CompletableFuture<byte[]> stamped;
+            try {
+                stamped = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return stampToBytes(payload);
+                    } catch (Exception e) {
+                        PosterMetrics.getDefault().recordFailure(e);
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+            } catch (RuntimeException e) {
+                // 线程池拒绝（例如已 close）只影响这一张，与其他失败一样回调
+                stamped = new CompletableFuture<>();
+                stamped.completeExceptionally(e);
+            }
+            stamped.whenComplete((bytes, error) ->
+                    emitter.complete(new StampResult(current, payload, bytes, unwrap(error))));
+        }
+        // 等待所有在途任务完成并回调
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+        return index;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * 转为 TYPE_3BYTE_BGR；带透明度的模板在输出 JPEG 时与编码器一样合成到白色背景上，否则保持 ARGB
+     */
+    private static BufferedImage toBgr(BufferedImage template, boolean flatten) {
+        boolean alpha = template.getColorModel().hasAlpha();
+        if (alpha && !flatten) {
+            return template;
+        }
+        BufferedImage bgr = new BufferedImage(template.getWidth(), template.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics2d = bgr.createGraphics();
+        try {
+            if (alpha) {
+                graphics2d.setColor(Color.WHITE);
+                graphics2d.fillRect(0, 0, template.getWidth(), template.getHeight());
+            }
+            graphics2d.drawImage(template, 0, 0, null);
+        } finally {
+            graphics2d.dispose();
+        }
+        return bgr;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("线程数必须大于0");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "qrcode-stamp-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 一块画布，记录上一张海报绘制过二维码的行；同一时刻只借给一个线程
+     */
+    private static final class Workspace {
+        private final BufferedImage template;
+        private final BufferedImage canvas;
+        private int dirtyTop;
+        private int dirtyBottom;
+
+        Workspace(BufferedImage template) {
+            this.template = template;
+            this.canvas = AssetCache.copyOf(template);
+        }
+
+        BufferedImage stamp(QrCodeOverlay overlay, String payload) throws WriterException {
+            restore();
+            Rectangle dirty = new Rectangle(0, 0, -1, -1);
+            try {
+                overlay.paintCodes(canvas, payload, dirty);
+            } finally {
+                // 失败时也可能画了一部分，下次照样恢复
+                dirtyTop = Math.max(0, dirty.y);
+                dirtyBottom = Math.min(canvas.getHeight(), dirty.y + Math.max(0, dirty.height));
+            }
+            return canvas;
+        }
+
+        /**
+         * 模板与画布布局相同且都是独占数组，连续的行可一次拷回
+         */
+        private void restore() {
+            if (dirtyBottom <= dirtyTop) {
+                return;
+            }
+            Object source = dataOf(template);
+            Object target = dataOf(canvas);
+            int rowLength = Array.getLength(source) / template.getHeight();
+            System.arraycopy(source, dirtyTop * rowLength, target, dirtyTop * rowLength, (dirtyBottom - dirtyTop) * rowLength);
+            dirtyBottom = dirtyTop;
+        }
+
+        private static Object dataOf(BufferedImage image) {
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            return buffer instanceof DataBufferInt ? ((DataBufferInt) buffer).getData() : ((DataBufferByte) buffer).getData();
+        }
+    }
+
+    /**
+     * 串行回调 sink；按输入顺序时缓存先完成的结果，轮到它时再回调。回调后才归还在途额度
+     */
+    private static final class Emitter {
+        private final Consumer<StampResult> sink;
+        private final Semaphore permits;
+        private final boolean ordered;
+        private final Map<Long, StampResult> pending = new HashMap<>();
+        private long next;
+
+        Emitter(Consumer<StampResult> sink, Semaphore permits, boolean ordered) {
+            this.sink = sink;
+            this.permits = permits;
+            this.ordered = ordered;
+        }
+
+        synchronized void complete(StampResult result) {
+            if (!ordered) {
+                emit(result);
+                return;
+            }
+            pending.put(result.getIndex(), result);
+            StampResult head;
+            while ((head = pending.remove(next)) != null) {
+                next++;
+                emit(head);
+            }
+        }
+
+        private void emit(StampResult result) {
+            try {
+                sink.accept(result);
+            } catch (RuntimeException e) {
+                logger.error("批量贴码结果回调失败: {}", e.getMessage(), e);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.lhk.QR;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 二维码缓存
+ * <p>
+ * 按 (内容, 宽, 高, 容错级别, 留白) 缓存 {@link QrCodeRenderer} 生成的 1 位黑白图，
+ * 活动推广链接等重复内容只编码一次。按占用字节数（打包像素 + 内容字符串）做 LRU 淘汰。
+ * 返回的图片被所有调用方共享，只能读取（例如绘制到海报上）不能修改，需要可写副本时使用
+ * {@link QrCodeRenderer#toRgb(BufferedImage)}。
+ */
+public class QrCodeCache {
+
+    /**
+     * 默认内存预算
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final QrCodeCache DEFAULT = new QrCodeCache(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, BufferedImage> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public QrCodeCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 全局共享的缓存
+     */
+    public static QrCodeCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 获取二维码，未命中时生成并缓存
+     *
+     * @return 只读共享的 1 位黑白图
+     */
+    public BufferedImage get(String content, int width, int height, ErrorCorrectionLevel errorCorrection, int margin)
+            throws WriterException {
+        if (content == null || content.isEmpty()) {
+            throw new IllegalArgumentException("二维码内容不能为空");
+        }
+        Key key = new Key(content, width, height, errorCorrection, margin);
+        synchronized (this) {
+            BufferedImage image = entries.get(key);
+            if (image != null) {
+                hits.incrementAndGet();
+                return image;
+            }
+        }
+        misses.incrementAndGet();
+        // 在锁外编码，并发未命中同一内容时可能重复生成一次，结果相同
+        BufferedImage image = QrCodeRenderer.render(content, width, height, errorCorrection, margin);
+        long size = sizeOf(key, image);
+        if (size > maxBytes) {
+            return image;
+        }
+        synchronized (this) {
+            BufferedImage existing = entries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            entries.put(key, image);
+            bytes += size;
+            Iterator<Map.Entry<Key, BufferedImage>> iterator = entries.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<Key, BufferedImage> eldest = iterator.next();
+                bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return image;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private static long sizeOf(Key key, BufferedImage image) {
+        return (long) ((image.getWidth() + 7) >> 3) * image.getHeight() + key.content.length() * 2L;
+    }
+
+    private static final class Key {
+        private final String content;
+        private final int width;
+        private final int height;
+        private final ErrorCorrectionLevel errorCorrection;
+        private final int margin;
+
+        Key(String content, int width, int height, ErrorCorrectionLevel errorCorrection, int margin) {
+            this.content = content;
+            this.width = width;
+            this.height = height;
+            this.errorCorrection = errorCorrection;
+            this.margin = margin;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height && margin == key.margin
+                    && errorCorrection == key.errorCorrection && content.equals(key.content);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(content, width, height, errorCorrection, margin);
+        }
+    }
+}
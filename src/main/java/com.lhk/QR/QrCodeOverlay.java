@@ -0,0 +1,282 @@
+package com.lhk.QR;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.lhk.poster.AssetCache;
+import com.lhk.poster.ImageEncoder;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 把二维码贴到固定海报模板上
+ * <p>
+ * 模板只解码一次并常驻内存（统一为 int 像素的 RGB / ARGB），之后每次贴码：
+ * <ul>
+ *     <li>整块复制模板像素数组得到副本，模板本身从不修改，可被任意线程并发使用；</li>
+ *     <li>二维码内容只编码一次，按各锚点的尺寸生成 1 位黑白图，直接写入副本的像素数组，不经过 Graphics2D；</li>
+ *     <li>副本只编码一次，写入调用方指定的输出，不产生临时文件和 Base64 中间结果。</li>
+ * </ul>
+ * 贴码本身只需一次内存复制，耗时主要在编码上：JPEG 远快于 PNG，批量贴码时可在多个线程上并发调用。
+ */
+public final class QrCodeOverlay {
+
+    /**
+     * 与 QRCodeWriter 的默认留白一致
+     */
+    public static final int DEFAULT_MARGIN = 4;
+
+    private final BufferedImage template;
+    private final List<Rectangle> anchors;
+    private final ErrorCorrectionLevel errorCorrection;
+    private final int margin;
+
+    /**
+     * 容错级别 H、默认留白
+     *
+     * @param template 海报模板，之后不得再修改
+     * @param anchors 二维码位置和尺寸，至少一个
+     */
+    public QrCodeOverlay(BufferedImage template, Rectangle... anchors) {
+        this(template, Arrays.asList(anchors), ErrorCorrectionLevel.H, DEFAULT_MARGIN);
+    }
+
+    /**
+     * @param template 海报模板，之后不得再修改
+     * @param anchors 二维码位置和尺寸，至少一个；内容较长、尺寸小于二维码最小尺寸时按最小尺寸绘制
+     * @param errorCorrection 容错级别
+     * @param margin 留白（模块数）
+     */
+    public QrCodeOverlay(BufferedImage template, List<Rectangle> anchors, ErrorCorrectionLevel errorCorrection,
+                         int margin) {
+        if (anchors.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个二维码位置");
+        }
+        if (margin < 0) {
+            throw new IllegalArgumentException("留白不能为负数: " + margin);
+        }
+        List<Rectangle> copies = new ArrayList<>(anchors.size());
+        for (Rectangle anchor : anchors) {
+            if (anchor.width < 0 || anchor.height < 0) {
+                throw new IllegalArgumentException("二维码尺寸不能为负数: " + anchor.width + 'x' + anchor.height);
+            }
+            copies.add(new Rectangle(anchor));
+        }
+        this.template = toIntRaster(Objects.requireNonNull(template));
+        this.anchors = Collections.unmodifiableList(copies);
+        this.errorCorrection = Objects.requireNonNull(errorCorrection);
+        this.margin = margin;
+    }
+
+    /**
+     * 使用类路径模板，例如 poster/bargain_post/bargain_post1.png，解码结果与 {@link AssetCache} 共享
+     *
+     * @throws IOException 资源不存在或无法解码
+     */
+    public static QrCodeOverlay forResource(String resource, Rectangle... anchors) throws IOException {
+        return new QrCodeOverlay(AssetCache.get(resource), anchors);
+    }
+
+    /**
+     * 使用本地模板文件
+     *
+     * @throws IOException 文件无法读取或解码
+     */
+    public static QrCodeOverlay load(Path path, Rectangle... anchors) throws IOException {
+        BufferedImage template = ImageIO.read(path.toFile());
+        if (template == null) {
+            throw new IOException("无法识别的图片格式: " + path);
+        }
+        return new QrCodeOverlay(template, anchors);
+    }
+
+    /**
+     * 共享同一份模板、使用其他位置的实例
+     */
+    public QrCodeOverlay withAnchors(Rectangle... anchors) {
+        return new QrCodeOverlay(template, Arrays.asList(anchors), errorCorrection, margin);
+    }
+
+    public BufferedImage getTemplate() {
+        return template;
+    }
+
+    public List<Rectangle> getAnchors() {
+        return anchors;
+    }
+
+    /**
+     * 生成内容对应的二维码并贴到模板副本的每个锚点上
+     *
+     * @return 新建的海报图片
+     * @throws WriterException 内容无法编码为二维码
+     */
+    public BufferedImage stamp(String content) throws WriterException {
+        BufferedImage poster = AssetCache.copyOf(template);
+        paintCodes(poster, content, new Rectangle(0, 0, -1, -1));
+        return poster;
+    }
+
+    /**
+     * 把已生成的二维码图片原尺寸贴到模板副本的每个锚点上（锚点只取位置）
+     *
+     * @return 新建的海报图片
+     */
+    public BufferedImage stamp(BufferedImage code) {
+        BufferedImage poster = AssetCache.copyOf(template);
+        for (Rectangle anchor : anchors) {
+            paint(poster, code, anchor.x, anchor.y);
+        }
+        return poster;
+    }
+
+    /**
+     * 贴码并编码一次，写入输出流（不关闭输出流）
+     *
+     * @throws WriterException 内容无法编码为二维码
+     * @throws IOException 编码或写入失败
+     */
+    public void stampTo(String content, ImageEncoder encoder, OutputStream outputStream) throws WriterException, IOException {
+        encoder.encode(stamp(content), outputStream);
+    }
+
+    /**
+     * 贴码并编码一次，写入文件
+     */
+    public void stampTo(String content, ImageEncoder encoder, Path output) throws WriterException, IOException {
+        BufferedImage poster = stamp(content);
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(output))) {
+            encoder.encode(poster, outputStream);
+        }
+    }
+
+    /**
+     * 贴码并编码为字节数组
+     */
+    public byte[] stampToBytes(String content, ImageEncoder encoder) throws WriterException, IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 * 1024);
+        stampTo(content, encoder, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 生成二维码并画到与模板尺寸相同的画布上
+     *
+     * @param dirty 并入实际绘制的区域（二维码可能大于锚点尺寸），初始可为宽高为 -1 的空区域
+     */
+    void paintCodes(BufferedImage canvas, String content, Rectangle dirty) throws WriterException {
+        if (content == null || content.isEmpty()) {
+            throw new IllegalArgumentException("二维码内容不能为空");
+        }
+        ByteMatrix matrix = QrCodeRenderer.encode(content, errorCorrection);
+        Map<Long, BufferedImage> codes = new HashMap<>(2);
+        for (Rectangle anchor : anchors) {
+            long size = (long) anchor.width << 32 | anchor.height;
+            BufferedImage code = codes.computeIfAbsent(size,
+                    s -> QrCodeRenderer.render(matrix, anchor.width, anchor.height, margin));
+            paint(canvas, code, anchor.x, anchor.y);
+            dirty.add(new Rectangle(anchor.x, anchor.y, code.getWidth(), code.getHeight()));
+        }
+    }
+
+    /**
+     * 1 位黑白图按调色板直接写入 int 或 BGR 字节像素，超出画布的部分被裁掉；其他图片交给 Graphics2D 绘制
+     */
+    static void paint(BufferedImage poster, BufferedImage code, int x, int y) {
+        int posterType = poster.getType();
+        boolean direct = code.getType() == BufferedImage.TYPE_BYTE_BINARY && code.getColorModel().getPixelSize() == 1
+                && (posterType == BufferedImage.TYPE_INT_RGB || posterType == BufferedImage.TYPE_INT_ARGB
+                || posterType == BufferedImage.TYPE_3BYTE_BGR)
+                && poster.getRaster().getParent() == null && poster.getRaster().getDataBuffer().getOffset() == 0;
+        if (!direct) {
+            Graphics2D graphics2d = poster.createGraphics();
+            try {
+                graphics2d.drawImage(code, x, y, null);
+            } finally {
+                graphics2d.dispose();
+            }
+            return;
+        }
+        IndexColorModel palette = (IndexColorModel) code.getColorModel();
+        // 模板为 RGB 时高 8 位被忽略，为 ARGB 时二维码不透明
+        int color0 = palette.getRGB(0) | 0xFF000000;
+        int color1 = palette.getRGB(1) | 0xFF000000;
+        byte[] data = ((DataBufferByte) code.getRaster().getDataBuffer()).getData();
+        int stride = (code.getWidth() + 7) >> 3;
+        int width = poster.getWidth();
+
+        int left = Math.max(0, x);
+        int right = Math.min(width, x + code.getWidth());
+        int top = Math.max(0, y);
+        int bottom = Math.min(poster.getHeight(), y + code.getHeight());
+        if (posterType == BufferedImage.TYPE_3BYTE_BGR) {
+            byte[] pixels = ((DataBufferByte) poster.getRaster().getDataBuffer()).getData();
+            for (int row = top; row < bottom; row++) {
+                int rowOffset = (row - y) * stride;
+                int pixelOffset = row * width * 3;
+                for (int column = left; column < right; column++) {
+                    int bit = column - x;
+                    boolean set = (data[rowOffset + (bit >> 3)] & (0x80 >>> (bit & 7))) != 0;
+                    int rgb = set ? color1 : color0;
+                    int offset = pixelOffset + column * 3;
+                    pixels[offset] = (byte) rgb;
+                    pixels[offset + 1] = (byte) (rgb >> 8);
+                    pixels[offset + 2] = (byte) (rgb >> 16);
+                }
+            }
+            return;
+        }
+        int[] pixels = ((DataBufferInt) poster.getRaster().getDataBuffer()).getData();
+        for (int row = top; row < bottom; row++) {
+            int rowOffset = (row - y) * stride;
+            int pixelOffset = row * width;
+            for (int column = left; column < right; column++) {
+                int bit = column - x;
+                boolean set = (data[rowOffset + (bit >> 3)] & (0x80 >>> (bit & 7))) != 0;
+                pixels[pixelOffset + column] = set ? color1 : color0;
+            }
+        }
+    }
+
+    /**
+     * 统一为独占数组的 TYPE_INT_RGB / TYPE_INT_ARGB，副本可整块复制、二维码可直接写像素
+     */
+    private static BufferedImage toIntRaster(BufferedImage image) {
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && image.getRaster().getParent() == null
+                && image.getRaster().getDataBuffer().getOffset() == 0) {
+            return image;
+        }
+        int targetType = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), targetType);
+        Graphics2D graphics2d = converted.createGraphics();
+        try {
+            graphics2d.setComposite(AlphaComposite.Src);
+            graphics2d.drawImage(image, 0, 0, null);
+        } finally {
+            graphics2d.dispose();
+        }
+        return converted;
+    }
+}
@@ -0,0 +1,167 @@
+package com.lhk.QR;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 二维码渲染
+ * <p>
+ * 直接从 ZXing 编码得到的模块矩阵生成 1 位黑白图（TYPE_BYTE_BINARY）：每个模块行只计算一次位图，
+ * 再按模块倍数整行复制到打包的 DataBuffer 中，不经过逐像素 setRGB 和整图重绘。
+ * 尺寸、留白和居中方式与 QRCodeWriter 完全一致，输出像素与原先的实现相同。
+ */
+public final class QrCodeRenderer {
+
+    /**
+     * 与原实现一致的编码参数：UTF-8 字符集。容错级别和留白由参数指定
+     */
+    private static final Map<EncodeHintType, Object> HINTS;
+
+    static {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        HINTS = Collections.unmodifiableMap(hints);
+    }
+
+    private QrCodeRenderer() {
+    }
+
+    /**
+     * 生成二维码
+     *
+     * @param content 内容
+     * @param width 期望宽度，小于二维码最小尺寸时取最小尺寸
+     * @param height 期望高度
+     * @param errorCorrection 容错级别
+     * @param margin 留白（模块数）
+     * @return 新建的 1 位黑白图
+     */
+    public static BufferedImage render(String content, int width, int height, ErrorCorrectionLevel errorCorrection,
+                                       int margin) throws WriterException {
+        if (content == null || content.isEmpty()) {
+            throw new IllegalArgumentException("二维码内容不能为空");
+        }
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("二维码尺寸不能为负数: " + width + 'x' + height);
+        }
+        return render(encode(content, errorCorrection), width, height, margin);
+    }
+
+    /**
+     * 编码得到模块矩阵，同一内容需要多种尺寸时只编码一次
+     */
+    static ByteMatrix encode(String content, ErrorCorrectionLevel errorCorrection) throws WriterException {
+        QRCode code = Encoder.encode(content, errorCorrection, HINTS);
+        return code.getMatrix();
+    }
+
+    static BufferedImage render(ByteMatrix input, int width, int height, int margin) {
+        int inputWidth = input.getWidth();
+        int inputHeight = input.getHeight();
+        int qrWidth = inputWidth + margin * 2;
+        int qrHeight = inputHeight + margin * 2;
+        int outputWidth = Math.max(width, qrWidth);
+        int outputHeight = Math.max(height, qrHeight);
+
+        // 与 QRCodeWriter.renderResult 相同：整数模块倍数，余量平分到两侧
+        int multiple = Math.min(outputWidth / qrWidth, outputHeight / qrHeight);
+        int leftPadding = (outputWidth - inputWidth * multiple) / 2;
+        int topPadding = (outputHeight - inputHeight * multiple) / 2;
+
+        BufferedImage image = new BufferedImage(outputWidth, outputHeight, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = (outputWidth + 7) >> 3;
+        // 调色板索引 1 为白色
+        Arrays.fill(data, (byte) 0xFF);
+
+        byte[] row = new byte[stride];
+        for (int y = 0; y < inputHeight; y++) {
+            Arrays.fill(row, (byte) 0xFF);
+            for (int x = 0; x < inputWidth; x++) {
+                if (input.get(x, y) == 1) {
+                    clearBits(row, leftPadding + x * multiple, multiple);
+                }
+            }
+            int offset = (topPadding + y * multiple) * stride;
+            for (int i = 0; i < multiple; i++, offset += stride) {
+                System.arraycopy(row, 0, data, offset, stride);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 把 [start, start + count) 的像素置为黑色（索引 0），像素按高位在前打包
+     */
+    private static void clearBits(byte[] row, int start, int count) {
+        int end = start + count;
+        int pixel = start;
+        while (pixel < end && (pixel & 7) != 0) {
+            row[pixel >> 3] &= (byte) ~(0x80 >>> (pixel & 7));
+            pixel++;
+        }
+        while (pixel + 8 <= end) {
+            row[pixel >> 3] = 0;
+            pixel += 8;
+        }
+        while (pixel < end) {
+            row[pixel >> 3] &= (byte) ~(0x80 >>> (pixel & 7));
+            pixel++;
+        }
+    }
+
+    /**
+     * 把 1 位黑白二维码展开为可写的 TYPE_INT_RGB 图片，直接写 int 像素数组
+     */
+    public static BufferedImage toRgb(BufferedImage binary) {
+        if (binary.getType() != BufferedImage.TYPE_BYTE_BINARY || binary.getColorModel().getPixelSize() != 1) {
+            throw new IllegalArgumentException("仅支持 1 位 TYPE_BYTE_BINARY 图片");
+        }
+        IndexColorModel palette = (IndexColorModel) binary.getColorModel();
+        int color0 = palette.getRGB(0) & 0xFFFFFF;
+        int color1 = palette.getRGB(1) & 0xFFFFFF;
+        int width = binary.getWidth();
+        int height = binary.getHeight();
+        byte[] data = ((DataBufferByte) binary.getRaster().getDataBuffer()).getData();
+        int stride = (width + 7) >> 3;
+
+        BufferedImage rgb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) rgb.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < height; y++) {
+            int rowOffset = y * stride;
+            int pixelOffset = y * width;
+            // 与上一行相同（同一模块行）时整行复制
+            if (y > 0 && rowEquals(data, rowOffset - stride, rowOffset, stride)) {
+                System.arraycopy(pixels, pixelOffset - width, pixels, pixelOffset, width);
+                continue;
+            }
+            for (int x = 0; x < width; x++) {
+                boolean set = (data[rowOffset + (x >> 3)] & (0x80 >>> (x & 7))) != 0;
+                pixels[pixelOffset + x] = set ? color1 : color0;
+            }
+        }
+        return rgb;
+    }
+
+    private static boolean rowEquals(byte[] data, int a, int b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (data[a + i] != data[b + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,26 @@
+package com.lhk.QR;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 批量贴码中单张海报的结果，成功时携带编码后的字节，失败时携带异常
+ */
+@Data
+@AllArgsConstructor
+public class StampResult {
+    /**
+     * 在输入序列中的序号（从0开始）
+     */
+    private long index;
+    /**
+     * 二维码内容
+     */
+    private String payload;
+    private byte[] bytes;
+    private Throwable error;
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
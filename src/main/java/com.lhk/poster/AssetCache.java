@@ -0,0 +1,164 @@
+package com.lhk.poster;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 类路径静态素材缓存
+ * <p>
+ * 默认背景、默认二维码以及 poster/* 下的头图、贴图等模板素材只解码一次并常驻内存。
+ * 需要在其上绘制的调用方通过 {@link #copy(String)} 拿到独立的栅格副本，只读使用的调用方
+ * 直接通过 {@link #get(String)} 共享同一份解码结果，渲染热路径上不再产生磁盘 I/O 和重复解码。
+ */
+public final class AssetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetCache.class);
+
+    /**
+     * 默认背景图
+     */
+    public static final String DEFAULT_BG = "default_bgimg.jpg";
+    /**
+     * 默认二维码
+     */
+    public static final String DEFAULT_QRCODE = "default_qrcodeimg.jpg";
+
+    private static final ConcurrentMap<String, BufferedImage> CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, String> VERSIONS = new ConcurrentHashMap<>();
+
+    private AssetCache() {
+    }
+
+    /**
+     * 获取共享的解码结果，调用方不得修改返回的图片。
+     *
+     * @param resource 类路径资源路径，例如 poster/bargain_post/bargain_post1.png
+     * @return 只读共享图片
+     * @throws IOException 资源不存在或无法解码
+     */
+    public static BufferedImage get(String resource) throws IOException {
+        BufferedImage image = CACHE.get(resource);
+        if (image != null) {
+            return image;
+        }
+        try {
+            return CACHE.computeIfAbsent(resource, AssetCache::decode);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 获取可写副本，适用于需要在素材上继续绘制的场景（例如海报背景）。
+     *
+     * @param resource 类路径资源路径
+     * @return 与缓存互不影响的图片副本
+     * @throws IOException 资源不存在或无法解码
+     */
+    public static BufferedImage copy(String resource) throws IOException {
+        return copyOf(get(resource));
+    }
+
+    /**
+     * 预先解码一批素材，通常在启动阶段调用。
+     *
+     * @param resources 类路径资源路径
+     * @throws IOException 任一资源不存在或无法解码
+     */
+    public static void preload(String... resources) throws IOException {
+        for (String resource : resources) {
+            get(resource);
+        }
+    }
+
+    /**
+     * 清空缓存，下次访问时重新解码。
+     */
+    public static void clear() {
+        CACHE.clear();
+        VERSIONS.clear();
+    }
+
+    /**
+     * 复制图片栅格。单 bank 的 byte/int 栅格直接整块拷贝底层数组，其他类型退回 {@link BufferedImage#copyData}。
+     *
+     * @param source 源图片
+     * @return 与源图片类型、色彩模型一致的独立副本
+     */
+    public static BufferedImage copyOf(BufferedImage source) {
+        WritableRaster raster = source.getRaster().createCompatibleWritableRaster();
+        copyData(source, raster);
+        return new BufferedImage(source.getColorModel(), raster, source.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * 把图片像素复制到尺寸相同的栅格，布局一致时整块拷贝底层数组
+     */
+    static void copyData(BufferedImage source, WritableRaster raster) {
+        DataBuffer from = source.getRaster().getDataBuffer();
+        DataBuffer to = raster.getDataBuffer();
+        boolean sameLayout = source.getRaster().getParent() == null
+                && source.getSampleModel().equals(raster.getSampleModel())
+                && from.getNumBanks() == 1 && from.getOffset() == 0 && to.getOffset() == 0
+                && from.getSize() == to.getSize();
+        if (sameLayout && from instanceof DataBufferByte && to instanceof DataBufferByte) {
+            byte[] src = ((DataBufferByte) from).getData();
+            System.arraycopy(src, 0, ((DataBufferByte) to).getData(), 0, src.length);
+        } else if (sameLayout && from instanceof DataBufferInt && to instanceof DataBufferInt) {
+            int[] src = ((DataBufferInt) from).getData();
+            System.arraycopy(src, 0, ((DataBufferInt) to).getData(), 0, src.length);
+        } else {
+            source.copyData(raster);
+        }
+    }
+
+    /**
+     * 素材版本：资源内容的 SHA-256，素材替换后随之变化，用于生成结果缓存的键
+     *
+     * @throws IOException 资源不存在
+     */
+    public static String version(String resource) throws IOException {
+        String version = VERSIONS.get(resource);
+        if (version != null) {
+            return version;
+        }
+        try (InputStream inputStream = AssetCache.class.getClassLoader().getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("资源未找到: " + resource);
+            }
+            version = DigestUtil.sha256Hex(inputStream);
+        }
+        VERSIONS.putIfAbsent(resource, version);
+        return version;
+    }
+
+    private static BufferedImage decode(String resource) {
+        ClassLoader classLoader = AssetCache.class.getClassLoader();
+        try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("资源未找到: " + resource);
+            }
+            BufferedImage image = ImageIO.read(inputStream);
+            if (image == null) {
+                throw new IOException("无法解码资源: " + resource);
+            }
+            logger.debug("素材已缓存: {} ({}x{})", resource, image.getWidth(), image.getHeight());
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
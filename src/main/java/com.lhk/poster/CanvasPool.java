@@ -0,0 +1,188 @@
+package com.lhk.poster;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 海报画布池
+ * <p>
+ * 每张海报都要一块与背景同尺寸的画布（默认背景约 2MB），大于 G1 区域一半的数组按巨型对象直接分配在老年代，
+ * 高并发时频繁触发并发标记。画布编码输出后归还到池中，下一张同尺寸、同类型的海报直接复用其栅格。
+ * 池按 (宽, 高, 类型) 分组，总字节数有上限，超出时归还的画布直接丢弃交给 GC。
+ * <p>
+ * 只有确定不再被引用的画布才能归还：PosterUtil 的 create 系列方法、批量生成和 {@link PosterService} 在编码完成后归还，
+ * 返回给调用方的图片（例如 {@link PosterUtil#render}）不会进入池中。
+ */
+public final class CanvasPool {
+
+    /**
+     * 默认池容量
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static volatile CanvasPool defaultInstance = new CanvasPool(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private final Map<Key, ArrayDeque<BufferedImage>> free = new HashMap<>();
+    private long pooledBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxBytes 池中空闲画布的总字节数上限，0 表示不缓存
+     */
+    public CanvasPool(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("画布池容量不能为负数");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 全局共享的画布池
+     */
+    public static CanvasPool getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 替换全局共享的画布池
+     */
+    public static void setDefault(CanvasPool pool) {
+        defaultInstance = Objects.requireNonNull(pool);
+    }
+
+    /**
+     * 取一块画布，内容未定义，调用方需完整覆盖
+     *
+     * @param type BufferedImage 的标准类型
+     */
+    public BufferedImage acquire(int width, int height, int type) {
+        if (isPoolable(type)) {
+            synchronized (free) {
+                ArrayDeque<BufferedImage> images = free.get(new Key(width, height, type));
+                BufferedImage image = images != null ? images.pollLast() : null;
+                if (image != null) {
+                    pooledBytes -= PosterMetrics.bytesOf(image);
+                    hits.incrementAndGet();
+                    return image;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return new BufferedImage(width, height, type);
+    }
+
+    /**
+     * 取一块画布并复制源图片的内容，源图片为自定义类型时退回 {@link AssetCache#copyOf(BufferedImage)}
+     */
+    public BufferedImage copyOf(BufferedImage source) {
+        if (!isPoolable(source.getType()) || source.getRaster().getParent() != null) {
+            return AssetCache.copyOf(source);
+        }
+        BufferedImage canvas = acquire(source.getWidth(), source.getHeight(), source.getType());
+        AssetCache.copyData(source, canvas.getRaster());
+        return canvas;
+    }
+
+    /**
+     * 归还不再使用的画布，归还后调用方不得再读写它；子图、自定义类型或超出容量时直接丢弃
+     */
+    public void release(BufferedImage image) {
+        if (image == null || !isPoolable(image.getType()) || image.getRaster().getParent() != null) {
+            return;
+        }
+        long bytes = PosterMetrics.bytesOf(image);
+        synchronized (free) {
+            if (pooledBytes + bytes > maxBytes) {
+                return;
+            }
+            ArrayDeque<BufferedImage> images = free.computeIfAbsent(
+                    new Key(image.getWidth(), image.getHeight(), image.getType()), key -> new ArrayDeque<>());
+            for (BufferedImage pooled : images) {
+                if (pooled == image) {
+                    // 重复归还
+                    return;
+                }
+            }
+            images.addLast(image);
+            pooledBytes += bytes;
+        }
+    }
+
+    public void clear() {
+        synchronized (free) {
+            free.clear();
+            pooledBytes = 0;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 池中空闲画布占用的字节数
+     */
+    public long getPooledBytes() {
+        synchronized (free) {
+            return pooledBytes;
+        }
+    }
+
+    /**
+     * 色彩模型完全由类型决定的标准类型才能按类型复用；索引色、自定义类型的色彩模型因图而异
+     */
+    private static boolean isPoolable(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_BGR:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static final class Key {
+        final int width;
+        final int height;
+        final int type;
+
+        Key(int width, int height, int type) {
+            this.width = width;
+            this.height = height;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height && type == key.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (width * 31 + height) * 31 + type;
+        }
+    }
+}
@@ -1,57 +1,48 @@
 package com.lhk.poster;
 
-import cn.hutool.core.io.IoUtil;
-import cn.hutool.http.HttpException;
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
+/**
+ * 同步下载图片的静态入口，实际下载委托给共享的 {@link ImageFetcher}（连接池复用、同 URL 请求合并），
+ * 需要异步或取消能力时请直接使用 ImageFetcher。
+ */
 public class CapturePic {
 
     private static final Logger logger = LoggerFactory.getLogger(CapturePic.class);
 
     // 默认超时设置（毫秒）
-    private static final int DEFAULT_TIMEOUT = 5000;
+    private static final int DEFAULT_TIMEOUT = ImageFetcher.DEFAULT_TIMEOUT;
 
     /**
-     * 将输入流中的数据读取并写入到一个临时文件中。
+     * 将数据写入指定目录下的临时文件。
      *
-     * @param inputStream 输入流，包含要写入临时文件的数据。
+     * @param bytes     要写入临时文件的数据。
      * @param prefix        临时文件名的前缀。
      * @param suffix        临时文件名的后缀。
      * @param directory     临时文件要保存的目录。
-     * @return 包含输入流数据的临时文件。
-     * @throws IOException  如果发生I/O错误，比如无法创建临时文件或读取输入流时出错。
+     * @return 包含数据的临时文件。
+     * @throws IOException  如果发生I/O错误，比如无法创建临时文件。
      */
-    private static File createTmpFile(InputStream inputStream, String prefix, String suffix, Path directory) throws IOException {
+    private static File createTmpFile(byte[] bytes, String prefix, String suffix, Path directory) throws IOException {
         // 确保目录存在
         if (!Files.exists(directory)) {
             Files.createDirectories(directory);
         }
 
         // 在指定目录中创建一个新的空文件，使用给定的前缀和后缀字符串生成其名称
-        File tmpFile = Files.createTempFile(directory, prefix, suffix).toFile();
-
-        // 新建文件输出流对象
-        try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
-            int read = 0;
-            byte[] bytes = new byte[1024 * 100];
-            while ((read = inputStream.read(bytes)) != -1) {
-                fos.write(bytes, 0, read);
-            }
-            fos.flush();
-        }
-
-        return tmpFile;
+        Path tmpFile = Files.createTempFile(directory, prefix, suffix);
+        Files.write(tmpFile, bytes);
+        return tmpFile.toFile();
     }
 
     /**
@@ -63,60 +54,68 @@ public class CapturePic {
      * @return 下载的图片文件
      */
     public static File capture(String picURL, Path directory, int timeout) {
-        if (StringUtils.isEmpty(picURL)) {
-            logger.error("图片URL不能为空");
-            throw new IllegalArgumentException("图片URL不能为空");
-        }
-
         if (directory == null) {
             directory = FileUtil.DEFAULT_DIRECTORY;
         }
 
-        if (timeout <= 0) {
-            timeout = DEFAULT_TIMEOUT;
-        }
+        byte[] bytes = captureBytes(picURL, timeout);
 
-        logger.debug("从URL下载图片: {}", picURL);
+        File pic;
+        try {
+            pic = createTmpFile(bytes, "pic_", ".jpg", directory);
+        } catch (IOException e) {
+            logger.error("保存图片失败: {}", e.getMessage(), e);
+            throw new RuntimeException("保存图片失败: " + e.getMessage(), e);
+        }
 
-        File pic = null;
-        HttpResponse response = null;
+        logger.debug("图片已下载到: {}", pic.getAbsolutePath());
+        return pic;
+    }
 
+    /**
+     * 从URL下载图片并直接从响应体解码，不经过临时文件
+     *
+     * @param picURL 图片URL
+     * @param timeout 超时时间（毫秒）
+     * @return 解码后的图片
+     */
+    public static BufferedImage captureImage(String picURL, int timeout) {
+        byte[] bytes = captureBytes(picURL, timeout);
         try {
-            // 使用Hutool发送HTTP请求，并设置自动重定向
-            response = HttpRequest.get(picURL)
-                    .header("Content-Type", "text/html;charset=UTF-8")
-                    .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-                    .timeout(timeout)
-                    .setFollowRedirects(true)
-                    .execute();
-
-            // 检查响应状态码
-            if (response.getStatus() >= 400) {
-                throw new HttpException("HTTP请求失败，状态码: " + response.getStatus());
-            }
-
-            // 获取响应输入流并创建临时文件
-            try (InputStream picStream = response.bodyStream()) {
-                pic = createTmpFile(picStream, "pic_", ".jpg", directory);
-            }
-        } catch (Exception e) {
-            logger.error("下载图片失败: {}", e.getMessage(), e);
-            e.printStackTrace(); // 添加这行以便在控制台看到完整错误信息
-            throw new RuntimeException("下载图片失败: " + e.getMessage(), e);
-        } finally {
-            // 关闭响应
-            if (response != null) {
-                IoUtil.close(response);
-            }
+            return CoverDecoder.getDefault().decode(bytes, 0, 0);
+        } catch (IOException e) {
+            logger.error("图片解码失败: {}", e.getMessage(), e);
+            throw new RuntimeException("图片解码失败: " + e.getMessage(), e);
         }
+    }
 
-        if (!pic.exists()) {
-            logger.error("图片下载失败，请提供正确的网络图片路径！");
-            throw new IllegalArgumentException("请提供正确的网络图片路径！");
+    /**
+     * 从URL下载图片的原始字节，解码交由调用方在合适的线程上完成
+     *
+     * @param picURL 图片URL
+     * @param timeout 超时时间（毫秒）
+     * @return 响应体字节
+     */
+    public static byte[] captureBytes(String picURL, int timeout) {
+        if (StringUtils.isEmpty(picURL)) {
+            logger.error("图片URL不能为空");
+            throw new IllegalArgumentException("图片URL不能为空");
         }
 
-        logger.debug("图片已下载到: {}", pic.getAbsolutePath());
-        return pic;
+        try {
+            return ImageFetcher.getDefault().fetchBytes(picURL, timeout).join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.error("下载图片失败: {}", cause.getMessage(), cause);
+            throw new RuntimeException("下载图片失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 使用默认超时从URL下载图片并直接解码
+     */
+    public static BufferedImage captureImage(String picURL) {
+        return captureImage(picURL, DEFAULT_TIMEOUT);
     }
 
     /**
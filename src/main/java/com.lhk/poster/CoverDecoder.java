@@ -0,0 +1,231 @@
+package com.lhk.poster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * 按目标尺寸解码封面图
+ * <p>
+ * 手机上传的封面常有 1200 万 ~ 5000 万像素，而海报上只画几百像素宽。这里先读图片头拿到原始尺寸：
+ * <ul>
+ *     <li>像素数超出预算的图片在分配任何像素缓冲区之前直接拒绝；</li>
+ *     <li>按目标宽度计算整数抽样因子，解码器只保留抽样后的像素（ImageReadParam 源抽样）；</li>
+ *     <li>给定最大可见高度时只解码会落在画布内的行（ImageReadParam 源区域）。</li>
+ * </ul>
+ * 抽样后的图片再由 {@link ImageScaler} 缩放到目标尺寸（默认 Lanczos3）。
+ * 解码和缩放期间占用的像素内存按图片头估算，并向 {@link PixelBudget} 申请额度，额度不足时排队或拒绝。
+ * 目标高度按原始尺寸计算，与整图解码后缩放的高度一致，不影响后续排版。
+ */
+public final class CoverDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoverDecoder.class);
+
+    /**
+     * 默认像素预算：1 亿像素（整图解码约 400MB 的 int 像素）
+     */
+    public static final long DEFAULT_MAX_PIXELS = 100_000_000L;
+
+    private static volatile CoverDecoder defaultInstance = new CoverDecoder(DEFAULT_MAX_PIXELS);
+
+    private final long maxPixels;
+    private final ImageScaler.Interpolation interpolation;
+
+    /**
+     * @param maxPixels 图片头中宽高乘积的上限
+     */
+    public CoverDecoder(long maxPixels) {
+        this(maxPixels, ImageScaler.Interpolation.LANCZOS3);
+    }
+
+    /**
+     * @param maxPixels 图片头中宽高乘积的上限
+     * @param interpolation 抽样解码后缩放到目标尺寸的插值方式
+     */
+    public CoverDecoder(long maxPixels, ImageScaler.Interpolation interpolation) {
+        if (maxPixels <= 0) {
+            throw new IllegalArgumentException("像素预算必须大于0");
+        }
+        this.maxPixels = maxPixels;
+        this.interpolation = Objects.requireNonNull(interpolation);
+    }
+
+    /**
+     * 全局共享的解码器，RemoteImageCache、PosterUtil 等默认使用该实例
+     */
+    public static CoverDecoder getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 替换全局共享的解码器，例如调整像素预算
+     */
+    public static void setDefault(CoverDecoder decoder) {
+        defaultInstance = Objects.requireNonNull(decoder);
+    }
+
+    public long getMaxPixels() {
+        return maxPixels;
+    }
+
+    public ImageScaler.Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * 解码图片字节
+     *
+     * @param bytes 图片数据
+     * @param targetWidth 目标宽度（按比例缩放），小于等于0时保持原图尺寸
+     * @param maxHeight 目标尺寸下的最大可见高度，超出部分不解码；小于等于0时不限制
+     * @return 新建的图片
+     * @throws ImageTooLargeException 图片像素数超出预算
+     * @throws IOException 数据不是可识别的图片格式或解码失败
+     */
+    public BufferedImage decode(byte[] bytes, int targetWidth, int maxHeight) throws IOException {
+        return decode(new ByteArrayInputStream(bytes), targetWidth, maxHeight);
+    }
+
+    /**
+     * 从输入流解码图片（不关闭输入流）
+     *
+     * @see #decode(byte[], int, int)
+     */
+    public BufferedImage decode(InputStream inputStream, int targetWidth, int maxHeight) throws IOException {
+        try (ImageInputStream iis = new MemoryCacheImageInputStream(inputStream)) {
+            return decode(iis, targetWidth, maxHeight);
+        }
+    }
+
+    /**
+     * 解码本地图片文件
+     *
+     * @see #decode(byte[], int, int)
+     */
+    public BufferedImage decode(File file, int targetWidth, int maxHeight) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            if (iis == null) {
+                throw new IOException("无法读取图片: " + file);
+            }
+            return decode(iis, targetWidth, maxHeight);
+        }
+    }
+
+    private BufferedImage decode(ImageInputStream iis, int targetWidth, int maxHeight) throws IOException {
+        long start = System.nanoTime();
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("无法识别的图片格式");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(iis, true, true);
+            int sourceWidth = reader.getWidth(0);
+            int sourceHeight = reader.getHeight(0);
+            if ((long) sourceWidth * sourceHeight > maxPixels) {
+                throw new ImageTooLargeException(sourceWidth, sourceHeight, maxPixels);
+            }
+
+            // 目标尺寸下的整图高度与可见高度
+            int fullWidth = targetWidth > 0 ? targetWidth : sourceWidth;
+            int fullHeight = targetWidth > 0 ? (int) Math.max(1, (long) sourceHeight * targetWidth / sourceWidth) : sourceHeight;
+            int outputHeight = maxHeight > 0 ? Math.min(fullHeight, maxHeight) : fullHeight;
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            // 只解码可见高度对应的源图行
+            int sourceRows = sourceHeight;
+            if (outputHeight < fullHeight) {
+                sourceRows = (int) Math.min(sourceHeight, ((long) outputHeight * sourceHeight + fullHeight - 1) / fullHeight);
+                param.setSourceRegion(new Rectangle(0, 0, sourceWidth, sourceRows));
+            }
+            // 只缩小不放大。源抽样是直接跳过像素，没有低通滤波：最近邻缩放时抽样到不小于目标宽度即可，
+            // 其余插值方式保留至少 2 倍目标宽度，剩余部分交给 ImageScaler 逐级减半和卷积重采样
+            int oversampling = interpolation == ImageScaler.Interpolation.NEAREST ? 1 : 2;
+            int subsampling = Math.max(1, sourceWidth / (fullWidth * oversampling));
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            // 源区域在目标尺寸下的高度，整图时与 fullHeight 一致；超出可见高度的部分被画布裁掉
+            int drawHeight = sourceRows == sourceHeight ? fullHeight
+                    : (int) (((long) sourceRows * fullHeight + sourceHeight - 1) / sourceHeight);
+
+            long estimate = estimateBytes(sourceWidth, sourceRows, subsampling, fullWidth, drawHeight);
+            PixelBudget budget = PixelBudget.getDefault();
+            if (!budget.fits(estimate)) {
+                throw new ImageTooLargeException(sourceWidth, sourceHeight,
+                        "图片解码所需内存 " + estimate + " 字节超过像素内存预算 " + budget.getMaxBytes());
+            }
+            PixelBudget.Permit permit = budget.acquire(estimate);
+            try {
+                BufferedImage decoded = reader.read(0, param);
+                if (decoded.getWidth() == fullWidth && decoded.getHeight() == outputHeight) {
+                    return decoded;
+                }
+                BufferedImage scaled = ImageScaler.scale(decoded, fullWidth, drawHeight, interpolation);
+                if (drawHeight > outputHeight) {
+                    // 复制可见部分，不让子图引用整块缩放结果
+                    scaled = AssetCache.copyOf(scaled.getSubimage(0, 0, fullWidth, outputHeight));
+                }
+                logger.debug("封面图按目标尺寸解码: {}x{} -> 抽样 1/{} 解码 {}x{} -> {}x{}", sourceWidth, sourceHeight,
+                        subsampling, decoded.getWidth(), decoded.getHeight(), fullWidth, outputHeight);
+                return scaled;
+            } finally {
+                permit.close();
+            }
+        } finally {
+            reader.dispose();
+            PosterMetrics.getDefault().recordStage(PosterMetrics.Stage.DECODE, start);
+        }
+    }
+
+    /**
+     * 解码峰值内存估算：抽样解码结果，加上缩放输出及其中间结果（按输出尺寸的两倍计），每像素按 4 字节计
+     */
+    private static long estimateBytes(int sourceWidth, int sourceRows, int subsampling, int width, int height) {
+        long decodedPixels = (long) ((sourceWidth + subsampling - 1) / subsampling)
+                * ((sourceRows + subsampling - 1) / subsampling);
+        long outputPixels = (long) width * height;
+        return (decodedPixels + 2 * outputPixels) * 4;
+    }
+
+    /**
+     * 图片像素数超出解码预算，调用方可据此返回 413 等明确的错误
+     */
+    public static class ImageTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int width;
+        private final int height;
+
+        ImageTooLargeException(int width, int height, long maxPixels) {
+            this(width, height, "图片尺寸过大: " + width + 'x' + height + "，像素预算 " + maxPixels);
+        }
+
+        ImageTooLargeException(int width, int height, String message) {
+            super(message);
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.lhk.poster;
+
+import java.awt.image.BufferedImage;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * data URI（data:image/...;base64,...）输出
+ * <p>
+ * 图片编码器的输出直接经过 Base64 编码流写入目标（响应体、调用方预分配的缓冲区），
+ * 不再经过 ByteArrayOutputStream、toByteArray、encodeToString 和字符串拼接四次整图复制。
+ * 需要 String 结果时，编码结果先写入一个 ASCII 缓冲区，最后只构造一次字符串。
+ */
+public final class DataUris {
+
+    public static final String JPEG_PREFIX = "data:image/jpeg;base64,";
+    public static final String PNG_PREFIX = "data:image/png;base64,";
+
+    private DataUris() {
+    }
+
+    /**
+     * 以 JPEG data URI 写入输出流（不关闭输出流）
+     */
+    public static void writeJpeg(BufferedImage image, OutputStream outputStream) throws IOException {
+        write(image, ImageEncoder.jpeg(), outputStream);
+    }
+
+    /**
+     * 以 PNG data URI 写入输出流（不关闭输出流）
+     */
+    public static void writePng(BufferedImage image, OutputStream outputStream) throws IOException {
+        write(image, ImageEncoder.png(), outputStream);
+    }
+
+    /**
+     * 按编码器的格式和参数写入 data URI（不关闭输出流）
+     */
+    public static void write(BufferedImage image, ImageEncoder encoder, OutputStream outputStream) throws IOException {
+        outputStream.write(prefix(encoder.getEffectiveFormat()).getBytes(StandardCharsets.US_ASCII));
+        // 关闭 Base64 编码流才会写出末尾的填充，但不能关闭调用方的输出流
+        OutputStream base64 = Base64.getEncoder().wrap(new NonClosingOutputStream(outputStream));
+        try {
+            encoder.encode(image, base64);
+        } finally {
+            base64.close();
+        }
+    }
+
+    /**
+     * 把已编码的图片字节写成 data URI（不关闭输出流），适用于同一份编码结果既要落盘又要输出 data URI 的场景
+     */
+    public static void write(ImageFormat format, byte[] encoded, OutputStream outputStream) throws IOException {
+        outputStream.write(prefix(format).getBytes(StandardCharsets.US_ASCII));
+        try (OutputStream base64 = Base64.getEncoder().wrap(new NonClosingOutputStream(outputStream))) {
+            base64.write(encoded);
+        }
+    }
+
+    /**
+     * 按编码器的格式和参数生成 data URI 字符串
+     */
+    public static String toString(BufferedImage image, ImageEncoder encoder) throws IOException {
+        AsciiBuffer buffer = new AsciiBuffer(64 * 1024);
+        write(image, encoder, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * 格式对应的 data URI 前缀
+     */
+    public static String prefix(ImageFormat format) {
+        switch (format) {
+            case JPEG:
+                return JPEG_PREFIX;
+            case PNG:
+                return PNG_PREFIX;
+            default:
+                return "data:" + format.getMimeType() + ";base64,";
+        }
+    }
+
+    /**
+     * 以 JPEG data URI 写入调用方提供的缓冲区，从 buffer 当前 position 开始写入
+     *
+     * @return 写入的字节数
+     * @throws java.nio.BufferOverflowException 缓冲区剩余空间不足
+     */
+    public static int writeJpeg(BufferedImage image, ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        writeJpeg(image, new ImageStreams.ByteBufferOutputStream(buffer));
+        return buffer.position() - start;
+    }
+
+    /**
+     * JPEG data URI 字符串
+     */
+    public static String toJpegString(BufferedImage image) throws IOException {
+        return toString(image, ImageEncoder.jpeg());
+    }
+
+    /**
+     * PNG data URI 字符串
+     */
+    public static String toPngString(BufferedImage image) throws IOException {
+        return toString(image, ImageEncoder.png());
+    }
+
+    /**
+     * 给定字节数的数据编码为 data URI 后的长度，可用于预分配缓冲区
+     */
+    public static int encodedLength(String prefix, int byteCount) {
+        return prefix.length() + (byteCount + 2) / 3 * 4;
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * 只保存 ASCII 字符的可增长缓冲区，转为字符串时不再复制出中间字节数组
+     */
+    private static final class AsciiBuffer extends OutputStream {
+        private byte[] bytes;
+        private int count;
+
+        AsciiBuffer(int initialCapacity) {
+            this.bytes = new byte[initialCapacity];
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, count, StandardCharsets.US_ASCII);
+        }
+    }
+}
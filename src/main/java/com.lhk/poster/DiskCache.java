@@ -0,0 +1,265 @@
+package com.lhk.poster;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按字节预算淘汰的磁盘缓存
+ * <p>
+ * 每个条目是一个以 key 的 SHA-256 命名的文件，文件头记录写入时间和 ETag / Last-Modified。
+ * 访问顺序同时维护在内存索引和文件修改时间上，重启后按修改时间恢复 LRU 顺序。
+ */
+public class DiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+
+    private static final int MAGIC = 0x4C484B31;
+    private static final String SUFFIX = ".bin";
+
+    private final Path directory;
+    private final long maxBytes;
+    /**
+     * 文件名 -> 文件大小，按访问顺序排列
+     */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param directory 缓存目录，不存在时自动创建
+     * @param maxBytes 字节预算
+     * @throws IOException 无法创建或扫描缓存目录
+     */
+    public DiskCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("磁盘缓存容量必须大于0");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        if (!Files.exists(directory)) {
+            Files.createDirectories(directory);
+        }
+        loadIndex();
+    }
+
+    /**
+     * 读取条目
+     *
+     * @return 条目，不存在或已损坏时返回 null
+     */
+    public Entry get(String key) {
+        String name = fileName(key);
+        synchronized (this) {
+            if (index.get(name) == null) {
+                return null;
+            }
+        }
+        Path file = directory.resolve(name);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("缓存文件格式错误: " + file);
+            }
+            long storedAt = in.readLong();
+            String etag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Entry(bytes, etag, lastModified, storedAt);
+        } catch (NoSuchFileException e) {
+            remove(name);
+            return null;
+        } catch (IOException e) {
+            logger.warn("读取磁盘缓存失败，已丢弃: {}", e.getMessage());
+            remove(name);
+            return null;
+        }
+    }
+
+    /**
+     * 写入条目，超出字节预算时按 LRU 淘汰旧条目
+     */
+    public void put(String key, byte[] bytes, String etag, String lastModified) {
+        String name = fileName(key);
+        Path file = directory.resolve(name);
+        try {
+            Path tmp = Files.createTempFile(directory, "tmp_", ".part");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeLong(System.currentTimeMillis());
+                    out.writeUTF(etag != null ? etag : "");
+                    out.writeUTF(lastModified != null ? lastModified : "");
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                // 写入或替换失败时不留下半成品临时文件
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            long size = Files.size(file);
+            synchronized (this) {
+                Long previous = index.put(name, size);
+                totalBytes += size - (previous != null ? previous : 0L);
+            }
+            evictIfNeeded();
+        } catch (IOException e) {
+            logger.warn("写入磁盘缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重新校验（304）后刷新条目的写入时间
+     */
+    public void touch(String key) {
+        Path file = directory.resolve(fileName(key));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(4);
+            raf.writeLong(System.currentTimeMillis());
+        } catch (IOException e) {
+            logger.debug("刷新磁盘缓存时间失败: {}", e.getMessage());
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return index.size();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private void loadIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort((a, b) -> {
+            try {
+                return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+            } catch (IOException e) {
+                return 0;
+            }
+        });
+        synchronized (this) {
+            for (Path file : files) {
+                long size = Files.size(file);
+                index.put(file.getFileName().toString(), size);
+                totalBytes += size;
+            }
+        }
+        evictIfNeeded();
+        logger.debug("磁盘缓存已加载: {} 个条目, {} 字节", index.size(), totalBytes);
+    }
+
+    private void evictIfNeeded() {
+        List<String> victims = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                totalBytes -= eldest.getValue();
+                victims.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String name : victims) {
+            evictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(directory.resolve(name));
+            } catch (IOException e) {
+                logger.debug("删除磁盘缓存失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void remove(String name) {
+        synchronized (this) {
+            Long size = index.remove(name);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(name));
+        } catch (IOException e) {
+            logger.debug("删除磁盘缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private static String fileName(String key) {
+        return DigestUtil.sha256Hex(key) + SUFFIX;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 磁盘缓存条目
+     */
+    public static final class Entry {
+        private final byte[] bytes;
+        private final String etag;
+        private final String lastModified;
+        private final long storedAt;
+
+        Entry(byte[] bytes, String etag, String lastModified, long storedAt) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * 写入（或最近一次校验通过）的时间戳（毫秒）
+         */
+        public long getStoredAt() {
+            return storedAt;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.lhk.poster;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * 排版结果中的一次绘制操作，坐标均已确定
+ * <p>
+ * 绘制操作不依赖调用顺序之外的任何状态（字体、颜色、提示都由操作自己设置），
+ * 因此同一组操作可以在任意 Graphics2D 上重放。
+ */
+public interface DrawOp {
+
+    void draw(Graphics2D graphics2d);
+
+    /**
+     * 绘制可能影响到的区域（保守估计，可能大于实际像素范围）
+     */
+    Rectangle getBounds();
+
+    /**
+     * 在指定区域绘制图片（按需缩放）
+     */
+    final class ImageOp implements DrawOp {
+        final BufferedImage image;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+
+        ImageOp(BufferedImage image, int x, int y, int width, int height) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void draw(Graphics2D graphics2d) {
+            graphics2d.drawImage(image, x, y, width, height, null);
+        }
+
+        @Override
+        public Rectangle getBounds() {
+            return new Rectangle(x, y, width, height);
+        }
+    }
+
+    /**
+     * 绘制已断行的文本，各行是同一字符数组上的区间，重复的文本行经 {@link TextRunCache} 复用排版和栅格化结果
+     */
+    final class TextOp implements DrawOp {
+        final Font font;
+        final Color color;
+        final boolean antialias;
+        final char[] chars;
+        final int[] starts;
+        final int[] ends;
+        final int[] xs;
+        final int[] baselines;
+        final Rectangle bounds;
+
+        TextOp(Font font, Color color, boolean antialias, char[] chars, int[] starts, int[] ends, int[] xs, int[] baselines,
+               int[] widths, FontMetricsTable metrics) {
+            this.font = font;
+            this.color = color;
+            this.antialias = antialias;
+            this.chars = chars;
+            this.starts = starts;
+            this.ends = ends;
+            this.xs = xs;
+            this.baselines = baselines;
+            this.bounds = textBounds(xs, baselines, widths, metrics);
+        }
+
+        @Override
+        public void draw(Graphics2D graphics2d) {
+            graphics2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                    antialias ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            graphics2d.setFont(font);
+            graphics2d.setColor(color);
+            TextRunCache cache = TextRunCache.getDefault();
+            for (int i = 0; i < starts.length; i++) {
+                cache.drawChars(graphics2d, chars, starts[i], ends[i] - starts[i], xs[i], baselines[i]);
+            }
+        }
+
+        @Override
+        public Rectangle getBounds() {
+            return new Rectangle(bounds);
+        }
+
+        /**
+         * 各行前进宽度 × 行高的并集，四周再留出一个行高，覆盖斜体、字形悬垂和抗锯齿的溢出
+         */
+        private static Rectangle textBounds(int[] xs, int[] baselines, int[] widths, FontMetricsTable metrics) {
+            Rectangle bounds = new Rectangle();
+            for (int i = 0; i < xs.length; i++) {
+                Rectangle line = new Rectangle(xs[i], baselines[i] - metrics.getAscent(), widths[i],
+                        metrics.getAscent() + metrics.getDescent());
+                bounds = i == 0 ? line : bounds.union(line);
+            }
+            int pad = metrics.getHeight();
+            bounds.grow(pad, pad);
+            return bounds;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.lhk.poster;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单个字体（族、样式、字号）的度量表
+ * <p>
+ * 行高、上升、下降等度量在创建时取一次；字符宽度按 256 个码点一页懒加载缓存，
+ * 同一页内的字符再次测量时不再经过 AWT。实例由 {@link FontRegistry#getMetrics(Font)} 提供并全局共享。
+ */
+public final class FontMetricsTable {
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final Font font;
+    private final FontMetrics metrics;
+    private final int height;
+    private final int ascent;
+    private final int descent;
+    /**
+     * BMP 字符宽度分页缓存，页内存放 宽度 + 1，0 表示尚未测量；元素写入是幂等的，无需加锁
+     */
+    private final AtomicReferenceArray<int[]> pages = new AtomicReferenceArray<>((Character.MAX_VALUE + 1) >> PAGE_BITS);
+
+    FontMetricsTable(Font font) {
+        this.font = font;
+        this.metrics = createMetrics(font);
+        this.height = metrics.getHeight();
+        this.ascent = metrics.getAscent();
+        this.descent = metrics.getDescent();
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * 底层的 AWT 度量
+     */
+    public FontMetrics getFontMetrics() {
+        return metrics;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getAscent() {
+        return ascent;
+    }
+
+    public int getDescent() {
+        return descent;
+    }
+
+    /**
+     * 码点的前进宽度
+     */
+    public int charWidth(int codePoint) {
+        if (codePoint > Character.MAX_VALUE) {
+            return metrics.charWidth(codePoint);
+        }
+        int pageIndex = codePoint >> PAGE_BITS;
+        int[] page = pages.get(pageIndex);
+        if (page == null) {
+            pages.compareAndSet(pageIndex, null, new int[PAGE_SIZE]);
+            page = pages.get(pageIndex);
+        }
+        int cached = page[codePoint & (PAGE_SIZE - 1)];
+        if (cached == 0) {
+            cached = metrics.charWidth((char) codePoint) + 1;
+            page[codePoint & (PAGE_SIZE - 1)] = cached;
+        }
+        return cached - 1;
+    }
+
+    /**
+     * 字符区间 [start, end) 的宽度，按码点累加缓存的前进宽度
+     */
+    public int stringWidth(CharSequence text, int start, int end) {
+        int width = 0;
+        for (int i = start; i < end; ) {
+            int codePoint = Character.codePointAt(text, i);
+            width += charWidth(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    /**
+     * 字符数组区间 [start, end) 的宽度
+     */
+    public int stringWidth(char[] chars, int start, int end) {
+        int width = 0;
+        for (int i = start; i < end; ) {
+            int codePoint = Character.codePointAt(chars, i, end);
+            width += charWidth(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    public int stringWidth(CharSequence text) {
+        return stringWidth(text, 0, text.length());
+    }
+
+    /**
+     * 与 FontDesignMetrics.getMetrics(font) 等价（默认 FontRenderContext：无变换、无抗锯齿、整数度量），
+     * 但只使用公开 API，在 JDK 9+ 上无需导出 sun.font
+     */
+    private static FontMetrics createMetrics(Font font) {
+        Graphics2D graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        try {
+            return graphics.getFontMetrics(font);
+        } finally {
+            graphics.dispose();
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.lhk.poster;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * 字体注册表
+ * <p>
+ * 系统字体列表只在首次使用时查询一次，并按回退链解析出实际使用的字体：优先使用微软雅黑，
+ * 未安装时（例如 Linux 渲染节点）依次尝试常见的中文字体，最终回退到总是可用的逻辑字体 SansSerif。
+ * 同一 (样式, 字号) 的 {@link Font} 及其 {@link FontMetricsTable} 只创建一次。
+ * <p>
+ * 随应用打包的 TTF / OTF 字体（类路径 fonts/ 或配置的目录）经 {@link Font#createFont(int, InputStream)} 加载后
+ * 登记在这里，优先于系统字体：回退链先在已加载的字体中查找，命中时不查询系统字体列表，也就没有首次枚举系统字体的开销，
+ * 各节点的输出与是否安装了系统字体无关。加载的字体不注册到 GraphicsEnvironment（注册时同样会枚举系统字体），
+ * 按字体族直接派生出各字号。严格模式下只使用已加载的字体，回退链中没有已加载的字体时直接报错，而不是回退到系统字体。
+ * 字体应在首次渲染之前加载，之后解析的模板才会使用它们。
+ */
+public final class FontRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(FontRegistry.class);
+
+    /**
+     * 类路径上随应用打包的字体目录
+     */
+    public static final String CLASSPATH_DIRECTORY = "fonts/";
+
+    private static final String[] FONT_EXTENSIONS = {".ttf", ".otf"};
+    /**
+     * 常规、粗体以外的字重，同一样式有常规字重的字体文件时不使用
+     */
+    private static final String[] OTHER_WEIGHTS = {"thin", "light", "medium", "semibold", "demibold", "extrabold",
+            "ultrabold", "black", "heavy"};
+
+    /**
+     * 默认回退链
+     */
+    public static final List<String> DEFAULT_FALLBACK_CHAIN = Collections.unmodifiableList(Arrays.asList(
+            "微软雅黑", "Microsoft YaHei", "PingFang SC", "Noto Sans CJK SC", "Source Han Sans SC",
+            "WenQuanYi Micro Hei", "SimHei", Font.SANS_SERIF));
+
+    private static final Set<String> LOGICAL_FONTS = new HashSet<>(Arrays.asList(
+            Font.DIALOG, Font.DIALOG_INPUT, Font.SANS_SERIF, Font.SERIF, Font.MONOSPACED));
+
+    private static final ConcurrentMap<Long, Font> FONTS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Font> FAMILY_FONTS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Font, FontMetricsTable> METRICS = new ConcurrentHashMap<>();
+
+    /**
+     * 已加载的字体：字体族（英文名和本地化名）-> 样式 -> 字体，按加载顺序排列
+     */
+    private static final Map<String, Map<Integer, Font>> LOADED = new LinkedHashMap<>();
+    /**
+     * 已加载字体文件的摘要，按资源名排序
+     */
+    private static final Map<String, String> LOADED_DIGESTS = new LinkedHashMap<>();
+
+    private static volatile Set<String> availableFamilies;
+    private static volatile String defaultFamily;
+    private static volatile boolean strict;
+    /**
+     * 每次 reset 加一，模板据此丢弃按旧字体编译的渲染计划和底图
+     */
+    private static volatile int generation;
+
+    private FontRegistry() {
+    }
+
+    /**
+     * 按回退链解析出的默认字体族
+     */
+    public static String getDefaultFamily() {
+        String family = defaultFamily;
+        if (family == null) {
+            synchronized (FontRegistry.class) {
+                family = defaultFamily;
+                if (family == null) {
+                    family = resolveFamily(getFallbackChain());
+                    defaultFamily = family;
+                }
+            }
+        }
+        return family;
+    }
+
+    /**
+     * 默认回退链：已加载的字体族（按加载顺序）在前，之后是 {@link #DEFAULT_FALLBACK_CHAIN}
+     */
+    public static List<String> getFallbackChain() {
+        List<String> chain = new ArrayList<>();
+        synchronized (LOADED) {
+            for (Map<Integer, Font> faces : LOADED.values()) {
+                String family = faces.values().iterator().next().getFamily(Locale.ENGLISH);
+                if (!chain.contains(family)) {
+                    chain.add(family);
+                }
+            }
+        }
+        chain.addAll(DEFAULT_FALLBACK_CHAIN);
+        return chain;
+    }
+
+    /**
+     * 从回退链中选出第一个可用的字体族，已加载的字体优先于系统字体
+     *
+     * @param chain 字体族名称，按优先级排列
+     * @return 可用的字体族，全部不可用时返回 SansSerif
+     * @throws IllegalStateException 严格模式下回退链中没有已加载的字体
+     */
+    public static String resolveFamily(List<String> chain) {
+        for (String family : chain) {
+            if (isLoaded(family)) {
+                if (!family.equals(chain.get(0))) {
+                    logger.info("字体 {} 未加载，使用已加载的 {}", chain.get(0), family);
+                }
+                return family;
+            }
+        }
+        if (strict) {
+            throw new IllegalStateException("严格模式下回退链 " + chain + " 中没有已加载的字体");
+        }
+        for (String family : chain) {
+            if (isAvailable(family)) {
+                if (!family.equals(chain.get(0))) {
+                    logger.warn("未安装字体 {}，回退使用 {}", chain.get(0), family);
+                }
+                return family;
+            }
+        }
+        logger.warn("回退链 {} 中没有可用字体，使用 {}", chain, Font.SANS_SERIF);
+        return Font.SANS_SERIF;
+    }
+
+    /**
+     * 判断字体族是否可用：已加载的字体，非严格模式下还包括系统字体和逻辑字体
+     */
+    public static boolean isAvailable(String family) {
+        if (isLoaded(family)) {
+            return true;
+        }
+        return !strict && (LOGICAL_FONTS.contains(family) || getAvailableFamilies().contains(family));
+    }
+
+    /**
+     * 字体族是否已经从字体文件加载
+     */
+    public static boolean isLoaded(String family) {
+        synchronized (LOADED) {
+            return LOADED.containsKey(family);
+        }
+    }
+
+    /**
+     * 严格模式：只使用已加载的字体，不查询系统字体
+     */
+    public static void setStrict(boolean strict) {
+        FontRegistry.strict = strict;
+        reset();
+    }
+
+    public static boolean isStrict() {
+        return strict;
+    }
+
+    /**
+     * 获取默认字体族的字体
+     */
+    public static Font getFont(int style, int size) {
+        long key = ((long) style << 32) | (size & 0xFFFFFFFFL);
+        return FONTS.computeIfAbsent(key, k -> newFont(getDefaultFamily(), style, size));
+    }
+
+    /**
+     * 获取指定字体族的字体，字体族应已通过 {@link #resolveFamily(List)} 确认可用
+     */
+    public static Font getFont(String family, int style, int size) {
+        if (family.equals(getDefaultFamily())) {
+            return getFont(style, size);
+        }
+        return FAMILY_FONTS.computeIfAbsent(family + '\0' + style + '\0' + size, k -> newFont(family, style, size));
+    }
+
+    /**
+     * 获取字体的度量表
+     */
+    public static FontMetricsTable getMetrics(Font font) {
+        return METRICS.computeIfAbsent(font, FontMetricsTable::new);
+    }
+
+    /**
+     * 加载类路径 fonts/ 下的全部 TTF / OTF 字体（目录和 jar 中的都会加载，同名资源只加载一次）
+     *
+     * @return 加载的字体数
+     */
+    public static int loadClasspathFonts() throws IOException {
+        ClassLoader loader = FontRegistry.class.getClassLoader();
+        Set<String> resources = new TreeSet<>();
+        Enumeration<URL> roots = loader.getResources(CLASSPATH_DIRECTORY);
+        while (roots.hasMoreElements()) {
+            listFontResources(roots.nextElement(), resources);
+        }
+        for (String resource : resources) {
+            try (InputStream inputStream = loader.getResourceAsStream(resource)) {
+                if (inputStream != null) {
+                    loadFont(resource, inputStream);
+                }
+            }
+        }
+        return resources.size();
+    }
+
+    /**
+     * 加载目录下的全部 TTF / OTF 字体（不含子目录）
+     *
+     * @return 加载的字体数
+     */
+    public static int loadFonts(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(path -> Files.isRegularFile(path) && isFontFile(path.getFileName().toString()))
+                    .sorted()
+                    .forEach(files::add);
+        }
+        for (Path file : files) {
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                loadFont(file.toAbsolutePath().toString(), inputStream);
+            }
+        }
+        return files.size();
+    }
+
+    /**
+     * 加载一个 TrueType / OpenType 字体（不关闭输入流）。样式按字体名称中的 Bold / Italic 判断，
+     * 同一样式优先使用常规字重（名称中没有 Light、Medium 等）的字体文件，没有对应样式的字体文件时由常规字体派生
+     *
+     * @param name 资源名，用于日志和字体摘要
+     * @return 加载的字体（1 磅）
+     * @throws IOException 读取失败或不是有效的字体文件
+     */
+    public static Font loadFont(String name, InputStream inputStream) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = IOUtils.toByteArray(inputStream);
+        Font font;
+        try {
+            font = Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(bytes));
+        } catch (FontFormatException e) {
+            throw new IOException("不是有效的字体文件: " + name, e);
+        }
+        int style = styleOf(font.getFontName(Locale.ENGLISH));
+        synchronized (LOADED) {
+            for (String family : new String[]{font.getFamily(Locale.ENGLISH), font.getFamily(Locale.SIMPLIFIED_CHINESE),
+                    font.getFamily()}) {
+                Map<Integer, Font> faces = LOADED.computeIfAbsent(family, k -> new LinkedHashMap<>());
+                Font existing = faces.get(style);
+                if (existing == null || (!isRegularWeight(existing) && isRegularWeight(font))) {
+                    faces.put(style, font);
+                }
+            }
+            LOADED_DIGESTS.put(name, DigestUtil.sha256Hex(bytes));
+        }
+        reset();
+        logger.info("已加载字体 {}（{}），耗时 {} ms", font.getFontName(Locale.ENGLISH), name,
+                (System.nanoTime() - start) / 1_000_000);
+        return font;
+    }
+
+    /**
+     * 字体指纹：已加载字体文件的摘要和默认字体族，字体变化后随之变化，用于生成结果缓存的键
+     */
+    public static String getFingerprint() {
+        StringBuilder builder = new StringBuilder(getDefaultFamily());
+        synchronized (LOADED) {
+            for (Map.Entry<String, String> entry : LOADED_DIGESTS.entrySet()) {
+                builder.append(';').append(entry.getValue());
+            }
+        }
+        return strict ? "strict;" + builder : builder.toString();
+    }
+
+    /**
+     * 预热字体与文字绘制：为已创建的每个字体生成度量表，并以抗锯齿开、关各绘制一次示例文本，
+     * 提前完成字体文件解析、字形栅格化等首次绘制时的初始化
+     */
+    public static void warmUp() {
+        long start = System.nanoTime();
+        List<Font> fonts = new ArrayList<>(FONTS.values());
+        fonts.addAll(FAMILY_FONTS.values());
+        if (fonts.isEmpty()) {
+            fonts.add(getFont(Font.PLAIN, 28));
+        }
+        BufferedImage canvas = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics2d = canvas.createGraphics();
+        try {
+            for (Font font : fonts) {
+                getMetrics(font);
+                graphics2d.setFont(font);
+                graphics2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                graphics2d.drawString("海报 Poster 0123", 0, 32);
+                graphics2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+                graphics2d.drawString("海报 Poster 0123", 0, 32);
+            }
+        } finally {
+            graphics2d.dispose();
+        }
+        logger.debug("已预热 {} 个字体，耗时 {} ms", fonts.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 已加载的字体族优先：有对应样式的字体文件时直接派生字号，否则由常规字体派生样式
+     */
+    private static Font newFont(String family, int style, int size) {
+        Map<Integer, Font> faces;
+        synchronized (LOADED) {
+            faces = LOADED.get(family);
+        }
+        if (faces == null) {
+            return new Font(family, style, size);
+        }
+        Font face = faces.get(style);
+        if (face != null) {
+            return face.deriveFont((float) size);
+        }
+        face = faces.containsKey(Font.PLAIN) ? faces.get(Font.PLAIN) : faces.values().iterator().next();
+        return face.deriveFont(style, (float) size);
+    }
+
+    private static boolean isRegularWeight(Font font) {
+        String name = font.getFontName(Locale.ENGLISH).toLowerCase(Locale.ROOT);
+        for (String weight : OTHER_WEIGHTS) {
+            if (name.contains(weight)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int styleOf(String fontName) {
+        String name = fontName.toLowerCase(Locale.ROOT);
+        int style = Font.PLAIN;
+        if (name.contains("bold")) {
+            style |= Font.BOLD;
+        }
+        if (name.contains("italic") || name.contains("oblique")) {
+            style |= Font.ITALIC;
+        }
+        return style;
+    }
+
+    /**
+     * 字体版本，加载字体或切换严格模式后变化
+     */
+    static int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 已解析的默认字体族、字体和字宽表在加载字体或切换模式后重新解析
+     */
+    private static void reset() {
+        synchronized (FontRegistry.class) {
+            defaultFamily = null;
+            generation++;
+        }
+        FONTS.clear();
+        FAMILY_FONTS.clear();
+        METRICS.clear();
+    }
+
+    private static boolean isFontFile(String name) {
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        for (String extension : FONT_EXTENSIONS) {
+            if (lowerCase.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 列出类路径根目录（文件目录或 jar）下 fonts/ 中的字体资源名
+     */
+    private static void listFontResources(URL root, Set<String> resources) throws IOException {
+        if ("file".equals(root.getProtocol())) {
+            Path directory;
+            try {
+                directory = Paths.get(root.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException("无法解析字体目录: " + root, e);
+            }
+            try (Stream<Path> stream = Files.list(directory)) {
+                stream.map(path -> path.getFileName().toString())
+                        .filter(FontRegistry::isFontFile)
+                        .forEach(name -> resources.add(CLASSPATH_DIRECTORY + name));
+            }
+            return;
+        }
+        URLConnection connection = root.openConnection();
+        if (connection instanceof JarURLConnection) {
+            JarURLConnection jarConnection = (JarURLConnection) connection;
+            jarConnection.setUseCaches(false);
+            String prefix = jarConnection.getEntryName();
+            try (JarFile jar = jarConnection.getJarFile()) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0 && isFontFile(name)) {
+                        resources.add(name);
+                    }
+                }
+            }
+        } else {
+            logger.warn("不支持列出该类路径下的字体: {}", root);
+        }
+    }
+
+    private static Set<String> getAvailableFamilies() {
+        Set<String> families = availableFamilies;
+        if (families == null) {
+            synchronized (FontRegistry.class) {
+                families = availableFamilies;
+                if (families == null) {
+                    long start = System.nanoTime();
+                    GraphicsEnvironment environment = GraphicsEnvironment.getLocalGraphicsEnvironment();
+                    families = new HashSet<>(Arrays.asList(environment.getAvailableFontFamilyNames()));
+                    // 本地化名称和英文名称都登记，例如 "微软雅黑" / "Microsoft YaHei"
+                    families.addAll(Arrays.asList(environment.getAvailableFontFamilyNames(Locale.ENGLISH)));
+                    availableFamilies = families;
+                    logger.debug("已加载 {} 个系统字体族，耗时 {} ms", families.size(),
+                            (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+        return families;
+    }
+}
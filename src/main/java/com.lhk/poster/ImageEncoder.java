@@ -0,0 +1,303 @@
+package com.lhk.poster;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 可配置的图片编码器
+ * <p>
+ * 实例不可变、线程安全，通常按渠道各建一个，例如 App 内分享用高质量 JPEG，小程序预览用渐进式低质量 JPEG 或 WebP。
+ * 底层 ImageWriter 按 (线程, 格式) 复用，不再每次查找 ImageIO 服务注册表和创建编码器。
+ * <pre>
+ * ImageEncoder encoder = ImageEncoder.builder()
+ *         .quality(0.8f)
+ *         .progressive(true)
+ *         .chromaSubsampling(ImageEncoder.ChromaSubsampling.YUV420)
+ *         .build();
+ * </pre>
+ * 所有选项都保持默认时，输出与 {@code ImageWriter.write(image)} 逐字节一致。
+ */
+@Getter
+public final class ImageEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageEncoder.class);
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    /**
+     * 每个线程按格式缓存一个 ImageWriter，编码结束后 reset 以便下次复用
+     */
+    private static final ThreadLocal<Map<ImageFormat, ImageWriter>> WRITERS =
+            ThreadLocal.withInitial(() -> new EnumMap<>(ImageFormat.class));
+
+    private static final ImageEncoder DEFAULT_JPEG = ImageEncoder.builder().build();
+    private static final ImageEncoder DEFAULT_PNG = ImageEncoder.builder().format(ImageFormat.PNG).build();
+
+    /**
+     * JPEG 色度抽样方式，值为亮度分量相对色度分量的水平、垂直抽样因子
+     */
+    public enum ChromaSubsampling {
+        /**
+         * 不抽样，文字边缘的彩色锯齿最少，体积最大
+         */
+        YUV444(1, 1),
+        YUV422(2, 1),
+        /**
+         * JDK 默认
+         */
+        YUV420(2, 2);
+
+        private final int horizontal;
+        private final int vertical;
+
+        ChromaSubsampling(int horizontal, int vertical) {
+            this.horizontal = horizontal;
+            this.vertical = vertical;
+        }
+    }
+
+    /**
+     * 输出格式，默认 JPEG
+     */
+    private final ImageFormat format;
+    /**
+     * 请求的格式没有可用编码器时使用的格式（例如未安装 WebP 插件），默认 JPEG
+     */
+    private final ImageFormat fallbackFormat;
+    /**
+     * 压缩质量 0 ~ 1：JPEG / WebP 为有损质量，PNG 为压缩率（越小压缩越强、越慢）；为空时使用编码器默认值
+     */
+    private final Float quality;
+    /**
+     * 渐进式 JPEG
+     */
+    private final boolean progressive;
+    /**
+     * JPEG 色度抽样，为空时使用编码器默认值（4:2:0）
+     */
+    private final ChromaSubsampling chromaSubsampling;
+    /**
+     * 去掉 JPEG 的 JFIF 等 APPn 段，只保留解码必需的数据
+     */
+    private final boolean stripMetadata;
+    /**
+     * PNG 调色板颜色数（2 ~ 256），0 表示真彩色
+     */
+    private final int paletteSize;
+    /**
+     * 实际使用的格式，构建时确定一次，编码时不再查询 ImageIO 服务注册表
+     */
+    private final ImageFormat effectiveFormat;
+
+    /**
+     * 由 builder 调用，取值非法时构建即失败，而不是等到编码时才报错
+     *
+     * @throws IllegalArgumentException 质量不在 0 ~ 1 之间，或调色板颜色数不是 0 且不在 2 ~ 256 之间
+     */
+    @Builder
+    private ImageEncoder(ImageFormat format, ImageFormat fallbackFormat, Float quality, boolean progressive,
+                         ChromaSubsampling chromaSubsampling, boolean stripMetadata, int paletteSize) {
+        if (quality != null && !(quality >= 0f && quality <= 1f)) {
+            throw new IllegalArgumentException("压缩质量必须在 0 ~ 1 之间: " + quality);
+        }
+        if (paletteSize != 0 && (paletteSize < 2 || paletteSize > 256)) {
+            throw new IllegalArgumentException("调色板颜色数必须在 2 ~ 256 之间，0 表示真彩色: " + paletteSize);
+        }
+        this.format = format != null ? format : ImageFormat.JPEG;
+        this.fallbackFormat = fallbackFormat != null ? fallbackFormat : ImageFormat.JPEG;
+        this.quality = quality;
+        this.progressive = progressive;
+        this.chromaSubsampling = chromaSubsampling;
+        this.stripMetadata = stripMetadata;
+        this.paletteSize = paletteSize;
+        this.effectiveFormat = this.format == ImageFormat.JPEG || this.format == ImageFormat.PNG || isSupported(this.format)
+                ? this.format : this.fallbackFormat;
+    }
+
+    /**
+     * 默认 JPEG 编码器
+     */
+    public static ImageEncoder jpeg() {
+        return DEFAULT_JPEG;
+    }
+
+    /**
+     * 默认 PNG 编码器（真彩色）
+     */
+    public static ImageEncoder png() {
+        return DEFAULT_PNG;
+    }
+
+    /**
+     * 当前运行环境是否有该格式的编码器
+     */
+    public static boolean isSupported(ImageFormat format) {
+        return ImageIO.getImageWritersByFormatName(format.getFormatName()).hasNext();
+    }
+
+    /**
+     * 实际使用的格式（请求的格式不可用时为回退格式），构建时确定，之后注册的 ImageIO 插件对已有实例不生效
+     */
+    public ImageFormat getEffectiveFormat() {
+        return effectiveFormat;
+    }
+
+    /**
+     * 编码并写入输出流（不关闭输出流）
+     *
+     * @throws IOException 编码或写入失败
+     */
+    public void encode(BufferedImage image, OutputStream outputStream) throws IOException {
+        long start = System.nanoTime();
+        ImageWriter writer = acquireWriter(effectiveFormat);
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(outputStream)) {
+            writer.setOutput(ios);
+            BufferedImage prepared = prepare(image, effectiveFormat);
+            ImageWriteParam param = createParam(writer, effectiveFormat);
+            IIOMetadata metadata = createMetadata(writer, prepared, param, effectiveFormat);
+            writer.write(null, new IIOImage(prepared, null, metadata), param);
+        } finally {
+            writer.reset();
+            PosterMetrics.getDefault().recordStage(PosterMetrics.Stage.ENCODE, start);
+        }
+    }
+
+    /**
+     * 编码为字节数组
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 * 1024);
+        encode(image, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 编码并写入调用方提供的缓冲区，从 buffer 当前 position 开始写入
+     *
+     * @return 写入的字节数
+     * @throws java.nio.BufferOverflowException 缓冲区剩余空间不足
+     */
+    public int encode(BufferedImage image, ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        encode(image, new ImageStreams.ByteBufferOutputStream(buffer));
+        return buffer.position() - start;
+    }
+
+    private static ImageWriter acquireWriter(ImageFormat format) throws IOException {
+        Map<ImageFormat, ImageWriter> writers = WRITERS.get();
+        ImageWriter writer = writers.get(format);
+        if (writer == null) {
+            Iterator<ImageWriter> iterator = ImageIO.getImageWritersByFormatName(format.getFormatName());
+            if (!iterator.hasNext()) {
+                throw new IOException("没有可用的编码器: " + format.getFormatName());
+            }
+            writer = iterator.next();
+            writers.put(format, writer);
+        }
+        return writer;
+    }
+
+    private BufferedImage prepare(BufferedImage image, ImageFormat effectiveFormat) {
+        if (effectiveFormat == ImageFormat.PNG && paletteSize > 0) {
+            return PaletteQuantizer.quantize(image, paletteSize);
+        }
+        if (effectiveFormat == ImageFormat.JPEG && image.getColorModel().hasAlpha()) {
+            return ImageStreams.toOpaque(image);
+        }
+        return image;
+    }
+
+    /**
+     * 全部为默认值时返回 null，与 ImageWriter.write(image) 一致
+     */
+    private ImageWriteParam createParam(ImageWriter writer, ImageFormat effectiveFormat) {
+        if (quality == null && !progressive) {
+            return null;
+        }
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (quality != null && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            String[] types = param.getCompressionTypes();
+            if (param.getCompressionType() == null && types != null && types.length > 0) {
+                param.setCompressionType(types[0]);
+            }
+            param.setCompressionQuality(quality);
+        }
+        if (progressive && effectiveFormat == ImageFormat.JPEG && param.canWriteProgressive()) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+        return param;
+    }
+
+    private IIOMetadata createMetadata(ImageWriter writer, BufferedImage image, ImageWriteParam param,
+                                       ImageFormat effectiveFormat) {
+        if (effectiveFormat != ImageFormat.JPEG || (chromaSubsampling == null && !stripMetadata)) {
+            return null;
+        }
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        try {
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+            if (stripMetadata) {
+                // JPEGvariety 下是 JFIF（APP0）及其扩展段
+                removeChildren(root.getElementsByTagName("JPEGvariety"));
+            }
+            if (chromaSubsampling != null) {
+                applySubsampling(root);
+            }
+            metadata.setFromTree(JPEG_METADATA_FORMAT, root);
+        } catch (Exception e) {
+            logger.warn("JPEG 元数据调整失败，使用默认元数据: {}", e.getMessage());
+            return null;
+        }
+        return metadata;
+    }
+
+    private static void removeChildren(NodeList nodes) {
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            while (node.getFirstChild() != null) {
+                node.removeChild(node.getFirstChild());
+            }
+        }
+    }
+
+    /**
+     * 只调整亮度分量（第一个分量）的抽样因子，色度分量保持 1x1
+     */
+    private void applySubsampling(IIOMetadataNode root) {
+        NodeList components = root.getElementsByTagName("componentSpec");
+        if (components.getLength() < 3) {
+            // 灰度图没有色度分量
+            return;
+        }
+        for (int i = 0; i < components.getLength(); i++) {
+            IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+            int horizontal = i == 0 ? chromaSubsampling.horizontal : 1;
+            int vertical = i == 0 ? chromaSubsampling.vertical : 1;
+            component.setAttribute("HsamplingFactor", Integer.toString(horizontal));
+            component.setAttribute("VsamplingFactor", Integer.toString(vertical));
+        }
+    }
+}
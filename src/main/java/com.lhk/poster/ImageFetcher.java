@@ -0,0 +1,425 @@
+package com.lhk.poster;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 异步图片下载器
+ * <p>
+ * 基于连接池（keep-alive 复用）的 HttpClient，下载在独立的 I/O 线程上执行并返回 {@link CompletableFuture}。
+ * <ul>
+ *     <li>每个主机同时进行的下载数受 maxPerHost 限制，超出的请求在该主机的队列中等待，不占用 I/O 线程，
+ *     也不影响其他主机的下载；</li>
+ *     <li>同一 URL 的并发请求合并为一次下载，所有调用方共享结果；</li>
+ *     <li>调用方取消 future 只会退订自己，当某次下载的所有调用方都取消后才会中断该请求；</li>
+ *     <li>支持携带 ETag / Last-Modified 的条件请求，供 {@link RemoteImageCache} 校验缓存。</li>
+ * </ul>
+ */
+public class ImageFetcher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageFetcher.class);
+
+    // 默认超时设置（毫秒）
+    public static final int DEFAULT_TIMEOUT = 5000;
+    public static final int DEFAULT_MAX_TOTAL = 64;
+    public static final int DEFAULT_MAX_PER_HOST = 8;
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36";
+
+    private static volatile ImageFetcher defaultInstance;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService ioExecutor;
+    private final int timeout;
+    private final int maxPerHost;
+    private final ConcurrentMap<String, Download> inflight = new ConcurrentHashMap<>();
+    /**
+     * 各主机正在进行和排队的下载，由自身加锁保护；主机空闲后移除
+     */
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+
+    public ImageFetcher() {
+        this(DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_HOST, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param maxTotal 最大连接数，同时也是 I/O 线程数
+     * @param maxPerHost 单个主机同时进行的最大下载数
+     * @param timeout 连接和读取的超时时间（毫秒），不含在主机队列中等待的时间
+     */
+    public ImageFetcher(int maxTotal, int maxPerHost, int timeout) {
+        if (maxTotal <= 0 || maxPerHost <= 0) {
+            throw new IllegalArgumentException("连接数必须大于0");
+        }
+        this.timeout = timeout > 0 ? timeout : DEFAULT_TIMEOUT;
+        this.maxPerHost = maxPerHost;
+        this.connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        this.connectionManager.setMaxTotal(maxTotal);
+        this.connectionManager.setDefaultMaxPerRoute(maxPerHost);
+        this.connectionManager.setValidateAfterInactivity(2000);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setUserAgent(USER_AGENT)
+                .setDefaultRequestConfig(requestConfig(this.timeout))
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+        AtomicInteger counter = new AtomicInteger();
+        this.ioExecutor = Executors.newFixedThreadPool(maxTotal, runnable -> {
+            Thread thread = new Thread(runnable, "poster-fetch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 全局共享的下载器，CapturePic 等静态入口使用该实例
+     */
+    public static ImageFetcher getDefault() {
+        ImageFetcher fetcher = defaultInstance;
+        if (fetcher == null) {
+            synchronized (ImageFetcher.class) {
+                fetcher = defaultInstance;
+                if (fetcher == null) {
+                    fetcher = new ImageFetcher();
+                    defaultInstance = fetcher;
+                }
+            }
+        }
+        return fetcher;
+    }
+
+    /**
+     * 异步下载图片原始字节
+     *
+     * @param picURL 图片URL
+     * @return 响应体字节；HTTP 状态码 >= 400 时以 IOException 异常完成
+     */
+    public CompletableFuture<byte[]> fetchBytes(String picURL) {
+        return fetchBytes(picURL, timeout);
+    }
+
+    /**
+     * 异步下载图片原始字节，合并到已在进行中的同 URL 下载时沿用其超时设置
+     *
+     * @param picURL 图片URL
+     * @param timeout 超时时间（毫秒），小于等于0时使用默认值
+     */
+    public CompletableFuture<byte[]> fetchBytes(String picURL, int timeout) {
+        return subscribe(picURL, null, null, timeout, Response::getBytes);
+    }
+
+    /**
+     * 异步下载并解码图片，解码在下载线程上完成
+     */
+    public CompletableFuture<BufferedImage> fetchImage(String picURL) {
+        return subscribe(picURL, null, null, timeout, response -> decode(response.getBytes()));
+    }
+
+    /**
+     * 条件请求：携带上次响应的 ETag / Last-Modified 校验缓存是否仍然有效
+     *
+     * @param picURL 图片URL
+     * @param etag 上次响应的 ETag，可为空
+     * @param lastModified 上次响应的 Last-Modified，可为空
+     * @return 响应；服务端返回 304 时 {@link Response#isNotModified()} 为 true 且不携带字节
+     */
+    public CompletableFuture<Response> fetchIfModified(String picURL, String etag, String lastModified) {
+        return subscribe(picURL, etag, lastModified, timeout, Function.identity());
+    }
+
+    @Override
+    public void close() throws IOException {
+        ioExecutor.shutdownNow();
+        httpClient.close();
+    }
+
+    private <T> CompletableFuture<T> subscribe(String picURL, String etag, String lastModified, int timeout,
+                                               Function<Response, T> mapper) {
+        if (StringUtils.isEmpty(picURL)) {
+            throw new IllegalArgumentException("图片URL不能为空");
+        }
+        int requestTimeout = timeout > 0 ? timeout : this.timeout;
+        // 携带不同校验信息的请求结果不同，不能合并
+        String key = etag == null && lastModified == null ? picURL : picURL + '\n' + etag + '\n' + lastModified;
+        while (true) {
+            Download created = new Download(key);
+            Download existing = inflight.putIfAbsent(key, created);
+            Download download = existing != null ? existing : created;
+            if (existing == null) {
+                start(created, picURL, etag, lastModified, requestTimeout);
+            } else {
+                logger.debug("合并图片下载请求: {}", picURL);
+            }
+            CompletableFuture<T> future = download.subscribe(mapper);
+            if (future != null) {
+                return future;
+            }
+            // 该下载刚刚被全部取消，重新发起
+            inflight.remove(key, download);
+        }
+    }
+
+    private void start(Download download, String picURL, String etag, String lastModified, int requestTimeout) {
+        HttpGet request = new HttpGet(picURL);
+        if (requestTimeout != timeout) {
+            request.setConfig(requestConfig(requestTimeout));
+        }
+        if (etag != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        download.request = request;
+        URI uri = request.getURI();
+        String host = uri.getScheme() + "://" + uri.getHost() + ':' + uri.getPort();
+        synchronized (hosts) {
+            HostQueue queue = hosts.computeIfAbsent(host, h -> new HostQueue());
+            if (queue.active >= maxPerHost) {
+                queue.waiting.add(download);
+                logger.debug("主机 {} 的下载数已达上限，排队等待: {}", host, picURL);
+                return;
+            }
+            queue.active++;
+        }
+        if (!dispatch(host, download)) {
+            next(host);
+        }
+    }
+
+    /**
+     * 把下载交给 I/O 线程，完成后从该主机的队列中取下一个
+     *
+     * @return 线程池拒绝时为 false，此时下载已以异常完成
+     */
+    private boolean dispatch(String host, Download download) {
+        try {
+            ioExecutor.execute(() -> {
+                try {
+                    download.result.complete(execute(download.request));
+                } catch (Throwable e) {
+                    download.result.completeExceptionally(download.request.isAborted()
+                            ? new CancellationException("下载已取消") : e);
+                } finally {
+                    inflight.remove(download.key, download);
+                    next(host);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            inflight.remove(download.key, download);
+            download.result.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    /**
+     * 一个下载结束后启动该主机队列中的下一个，排队期间已被全部取消的下载直接跳过；队列为空时归还名额
+     */
+    private void next(String host) {
+        while (true) {
+            Download download;
+            synchronized (hosts) {
+                HostQueue queue = hosts.get(host);
+                download = queue.waiting.poll();
+                while (download != null && download.result.isDone()) {
+                    inflight.remove(download.key, download);
+                    download = queue.waiting.poll();
+                }
+                if (download == null) {
+                    if (--queue.active == 0) {
+                        hosts.remove(host);
+                    }
+                    return;
+                }
+            }
+            if (dispatch(host, download)) {
+                return;
+            }
+        }
+    }
+
+    private Response execute(HttpGet request) throws IOException {
+        logger.debug("从URL下载图片: {}", request.getURI());
+        long start = System.nanoTime();
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            String etag = headerValue(response, HttpHeaders.ETAG);
+            String lastModified = headerValue(response, HttpHeaders.LAST_MODIFIED);
+            if (status == HttpStatus.SC_NOT_MODIFIED) {
+                EntityUtils.consumeQuietly(entity);
+                return new Response(null, etag, lastModified);
+            }
+            if (status >= 400) {
+                EntityUtils.consumeQuietly(entity);
+                throw new IOException("HTTP请求失败，状态码: " + status);
+            }
+            if (entity == null) {
+                throw new IOException("响应体为空: " + request.getURI());
+            }
+            // 读完响应体后连接自动归还连接池
+            return new Response(EntityUtils.toByteArray(entity), etag, lastModified);
+        } finally {
+            PosterMetrics.getDefault().recordStage(PosterMetrics.Stage.FETCH, start);
+        }
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * 每个主机的下载数已由主机队列限制在连接池的单主机上限内，等待连接池的超时只是兜底
+     */
+    private static RequestConfig requestConfig(int timeout) {
+        return RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setRedirectsEnabled(true)
+                .build();
+    }
+
+    /**
+     * 原尺寸解码，像素数超出 {@link CoverDecoder} 预算的图片在分配像素前即被拒绝
+     */
+    static BufferedImage decode(byte[] bytes) {
+        try {
+            return CoverDecoder.getDefault().decode(bytes, 0, 0);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 下载结果
+     */
+    public static final class Response {
+        private final byte[] bytes;
+        private final String etag;
+        private final String lastModified;
+
+        Response(byte[] bytes, String etag, String lastModified) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * 响应体字节，304 时为 null
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public boolean isNotModified() {
+            return bytes == null;
+        }
+    }
+
+    /**
+     * 单个主机正在进行的下载数和排队的下载
+     */
+    private static final class HostQueue {
+        int active;
+        final ArrayDeque<Download> waiting = new ArrayDeque<>();
+    }
+
+    /**
+     * 一次（可能被多个调用方共享的）下载
+     */
+    private static final class Download {
+        final String key;
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        /**
+         * 订阅者数量，-1 表示已全部取消、不再接受订阅
+         */
+        final AtomicInteger subscribers = new AtomicInteger();
+        volatile HttpGet request;
+
+        Download(String key) {
+            this.key = key;
+        }
+
+        <T> CompletableFuture<T> subscribe(Function<Response, T> mapper) {
+            int count;
+            do {
+                count = subscribers.get();
+                if (count < 0) {
+                    return null;
+                }
+            } while (!subscribers.compareAndSet(count, count + 1));
+
+            CompletableFuture<T> view = new CompletableFuture<>();
+            result.whenComplete((response, error) -> {
+                if (error != null) {
+                    view.completeExceptionally(error);
+                    return;
+                }
+                try {
+                    view.complete(mapper.apply(response));
+                } catch (Throwable e) {
+                    view.completeExceptionally(e);
+                }
+            });
+            view.whenComplete((value, error) -> {
+                if (view.isCancelled()) {
+                    unsubscribe();
+                }
+            });
+            return view;
+        }
+
+        private void unsubscribe() {
+            if (subscribers.decrementAndGet() == 0 && subscribers.compareAndSet(0, -1)) {
+                logger.debug("图片下载已被所有调用方取消: {}", key);
+                HttpGet get = request;
+                if (get != null) {
+                    get.abort();
+                }
+                result.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.lhk.poster;
+
+/**
+ * 海报输出格式
+ */
+public enum ImageFormat {
+
+    JPEG("jpg", "image/jpeg", ".jpg"),
+    PNG("png", "image/png", ".png"),
+    /**
+     * 需要类路径上有 WebP 的 ImageIO 插件（例如 webp-imageio），否则按编码器配置回退
+     */
+    WEBP("webp", "image/webp", ".webp");
+
+    private final String formatName;
+    private final String mimeType;
+    private final String extension;
+
+    ImageFormat(String formatName, String mimeType, String extension) {
+        this.formatName = formatName;
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    /**
+     * ImageIO 格式名称
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * 文件扩展名（含点）
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
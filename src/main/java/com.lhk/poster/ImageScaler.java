@@ -0,0 +1,435 @@
+package com.lhk.poster;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 高质量图片缩放
+ * <p>
+ * 不带插值提示的 {@code Graphics2D.drawImage(image, x, y, w, h, null)} 是最近邻采样，大比例缩小时锯齿和摩尔纹明显，
+ * 源图是 3BYTE_BGR、索引色等类型时还会走较慢的通用像素循环。这里：
+ * <ul>
+ *     <li>先把源图统一为 TYPE_INT_RGB（带透明通道时为 TYPE_INT_ARGB_PRE），内层循环直接读写 int 像素数组；
+ *     JPEG 解码得到的 TYPE_3BYTE_BGR 大图在第一次减半时直接读字节数组，不复制整图；</li>
+ *     <li>缩小超过 2 倍时先逐级做 2x2 平均减半，直到剩余比例小于 2；</li>
+ *     <li>最后一步用可分离卷积核先纵向、再横向重采样，权重为 14 位定点整数；</li>
+ *     <li>像素较多时按行带拆分到 ForkJoinPool 并行执行。</li>
+ * </ul>
+ * 返回新建的图片，不修改源图。
+ */
+public final class ImageScaler {
+
+    /**
+     * 定点权重的小数位数
+     */
+    private static final int PRECISION = 14;
+    private static final int ONE = 1 << PRECISION;
+    private static final int HALF = 1 << (PRECISION - 1);
+
+    /**
+     * 单个并行任务处理的最少像素数，总像素数不超过该值时不拆分
+     */
+    private static final int BAND_PIXELS = 1 << 16;
+
+    /**
+     * 插值方式
+     */
+    public enum Interpolation {
+        /**
+         * 最近邻，与不带插值提示的 drawImage 完全一致
+         */
+        NEAREST(0),
+        BILINEAR(1),
+        /**
+         * Catmull-Rom 双三次
+         */
+        BICUBIC(2),
+        /**
+         * 三瓣 Lanczos，细节保留最好，文字、线条边缘可能有轻微振铃
+         */
+        LANCZOS3(3);
+
+        private final double support;
+
+        Interpolation(double support) {
+            this.support = support;
+        }
+
+        double kernel(double x) {
+            x = Math.abs(x);
+            switch (this) {
+                case BILINEAR:
+                    return x < 1 ? 1 - x : 0;
+                case BICUBIC:
+                    if (x < 1) {
+                        return (1.5 * x - 2.5) * x * x + 1;
+                    }
+                    return x < 2 ? ((-0.5 * x + 2.5) * x - 4) * x + 2 : 0;
+                case LANCZOS3:
+                    if (x == 0) {
+                        return 1;
+                    }
+                    if (x >= 3) {
+                        return 0;
+                    }
+                    double px = Math.PI * x;
+                    return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+                default:
+                    return x < 0.5 ? 1 : 0;
+            }
+        }
+    }
+
+    private ImageScaler() {
+    }
+
+    /**
+     * 按宽度等比缩放，高度取整方式与 {@link RenderPlan} 中插槽图片一致
+     */
+    public static BufferedImage scaleToWidth(BufferedImage image, int width, Interpolation interpolation) {
+        return scale(image, width, Math.max(1, image.getHeight() * width / image.getWidth()), interpolation);
+    }
+
+    /**
+     * 缩放到指定尺寸
+     *
+     * @param image 源图，任意类型
+     * @param width 目标宽度
+     * @param height 目标高度
+     * @param interpolation 插值方式
+     * @return 新建的图片：NEAREST 时不透明源图为 TYPE_INT_RGB、带透明通道为 TYPE_INT_ARGB；
+     * 其余方式不透明源图为 TYPE_INT_RGB、带透明通道为 TYPE_INT_ARGB_PRE
+     */
+    public static BufferedImage scale(BufferedImage image, int width, int height, Interpolation interpolation) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("目标尺寸必须大于0: " + width + 'x' + height);
+        }
+        boolean alpha = image.getColorModel().hasAlpha();
+        if (interpolation == Interpolation.NEAREST) {
+            return redraw(image, width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        }
+
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB;
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        int[] pixels;
+        byte[] bgr = bgrData(image);
+        if (bgr != null && sourceWidth >= width * 2 && sourceHeight >= height * 2) {
+            // JPEG 解码结果（3BYTE_BGR）需要减半时直接从字节数组减半，不再先复制出整张 int 像素图
+            int halfWidth = sourceWidth / 2;
+            int halfHeight = sourceHeight / 2;
+            pixels = halveBgr(bgr, sourceWidth, halfWidth, halfHeight);
+            sourceWidth = halfWidth;
+            sourceHeight = halfHeight;
+        } else {
+            pixels = pixels(normalize(image, type));
+        }
+
+        // 逐级减半，每级 2x2 平均，直到剩余比例小于 2
+        while (sourceWidth >= width * 2 && sourceHeight >= height * 2) {
+            int halfWidth = sourceWidth / 2;
+            int halfHeight = sourceHeight / 2;
+            pixels = halve(pixels, sourceWidth, halfWidth, halfHeight);
+            sourceWidth = halfWidth;
+            sourceHeight = halfHeight;
+        }
+
+        if (sourceWidth != width || sourceHeight != height) {
+            // 先纵向缩放到目标高度（整行累加，可向量化），再在行数较少的中间结果上横向缩放到目标宽度
+            int[] vertical = new int[sourceWidth * height];
+            resampleColumns(pixels, vertical, sourceWidth, height, weights(sourceHeight, height, interpolation), alpha);
+            int[] horizontal = new int[width * height];
+            resampleRows(vertical, sourceWidth, horizontal, width, height,
+                    weights(sourceWidth, width, interpolation), alpha);
+            pixels = horizontal;
+        }
+
+        BufferedImage result = new BufferedImage(width, height, type);
+        System.arraycopy(pixels, 0, pixels(result), 0, pixels.length);
+        return result;
+    }
+
+    /**
+     * 统一为无偏移、行宽等于图片宽度的 int 像素图，已满足时直接使用源图
+     */
+    private static BufferedImage normalize(BufferedImage image, int type) {
+        WritableRaster raster = image.getRaster();
+        if (image.getType() == type && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && ((DataBufferInt) raster.getDataBuffer()).getData().length == image.getWidth() * image.getHeight()) {
+            return image;
+        }
+        return redraw(image, image.getWidth(), image.getHeight(), type);
+    }
+
+    /**
+     * 无偏移、行宽等于图片宽度的 TYPE_3BYTE_BGR 图片的字节数组，其他情况返回 null
+     */
+    private static byte[] bgrData(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        if (image.getType() != BufferedImage.TYPE_3BYTE_BGR || !(raster.getDataBuffer() instanceof DataBufferByte)
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            return null;
+        }
+        byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+        return data.length == image.getWidth() * image.getHeight() * 3 ? data : null;
+    }
+
+    private static BufferedImage redraw(BufferedImage image, int width, int height, int type) {
+        BufferedImage copy = new BufferedImage(width, height, type);
+        Graphics2D graphics = copy.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return copy;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * 2x2 平均减半，奇数尺寸时丢弃最后一行 / 一列
+     */
+    private static int[] halve(int[] source, int sourceWidth, int width, int height) {
+        int[] target = new int[width * height];
+        forEachBand(height, width, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int row0 = 2 * y * sourceWidth;
+                int row1 = row0 + sourceWidth;
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int p0 = source[row0 + 2 * x];
+                    int p1 = source[row0 + 2 * x + 1];
+                    int p2 = source[row1 + 2 * x];
+                    int p3 = source[row1 + 2 * x + 1];
+                    // 按通道求和：先分出 A/G 与 R/B 两组，每组两个通道互不进位
+                    int ag = (p0 >>> 8 & 0xFF00FF) + (p1 >>> 8 & 0xFF00FF) + (p2 >>> 8 & 0xFF00FF) + (p3 >>> 8 & 0xFF00FF);
+                    int rb = (p0 & 0xFF00FF) + (p1 & 0xFF00FF) + (p2 & 0xFF00FF) + (p3 & 0xFF00FF);
+                    ag = (ag + 0x20002) >>> 2 & 0xFF00FF;
+                    rb = (rb + 0x20002) >>> 2 & 0xFF00FF;
+                    target[offset + x] = ag << 8 | rb;
+                }
+            }
+        });
+        return target;
+    }
+
+    /**
+     * 从 3BYTE_BGR 字节数组 2x2 平均减半为 int RGB 像素
+     */
+    private static int[] halveBgr(byte[] source, int sourceWidth, int width, int height) {
+        int[] target = new int[width * height];
+        int stride = sourceWidth * 3;
+        forEachBand(height, width * 4, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int row0 = 2 * y * stride;
+                int row1 = row0 + stride;
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int i0 = row0 + 6 * x;
+                    int i1 = row1 + 6 * x;
+                    int b = (source[i0] & 0xFF) + (source[i0 + 3] & 0xFF) + (source[i1] & 0xFF) + (source[i1 + 3] & 0xFF);
+                    int g = (source[i0 + 1] & 0xFF) + (source[i0 + 4] & 0xFF) + (source[i1 + 1] & 0xFF) + (source[i1 + 4] & 0xFF);
+                    int r = (source[i0 + 2] & 0xFF) + (source[i0 + 5] & 0xFF) + (source[i1 + 2] & 0xFF) + (source[i1 + 5] & 0xFF);
+                    target[offset + x] = 0xFF000000 | (r + 2) >> 2 << 16 | (g + 2) >> 2 << 8 | (b + 2) >> 2;
+                }
+            }
+        });
+        return target;
+    }
+
+    /**
+     * 一维重采样的权重表：每个目标像素对应的源像素起点、个数和定点权重
+     */
+    private static final class Weights {
+        final int[] starts;
+        final int[] counts;
+        final int[] values;
+        final int taps;
+
+        Weights(int[] starts, int[] counts, int[] values, int taps) {
+            this.starts = starts;
+            this.counts = counts;
+            this.values = values;
+            this.taps = taps;
+        }
+    }
+
+    private static Weights weights(int sourceSize, int targetSize, Interpolation interpolation) {
+        double scale = (double) targetSize / sourceSize;
+        // 缩小时按比例展宽卷积核，起到低通滤波的作用
+        double filterScale = Math.max(1.0, 1.0 / scale);
+        double support = interpolation.support * filterScale;
+        int taps = (int) Math.ceil(support) * 2 + 1;
+        int[] starts = new int[targetSize];
+        int[] counts = new int[targetSize];
+        int[] values = new int[targetSize * taps];
+        double[] kernel = new double[taps];
+        for (int i = 0; i < targetSize; i++) {
+            double center = (i + 0.5) / scale;
+            int start = Math.max(0, (int) Math.floor(center - support));
+            int end = Math.min(sourceSize, (int) Math.ceil(center + support));
+            int count = Math.min(end - start, taps);
+            double sum = 0;
+            for (int j = 0; j < count; j++) {
+                kernel[j] = interpolation.kernel((start + j + 0.5 - center) / filterScale);
+                sum += kernel[j];
+            }
+            // 归一化为定点权重，舍入误差补到最大的权重上，保证权重和恰好为 1
+            int total = 0;
+            int largest = 0;
+            int base = i * taps;
+            for (int j = 0; j < count; j++) {
+                int value = (int) Math.round(kernel[j] / sum * ONE);
+                values[base + j] = value;
+                total += value;
+                if (value > values[base + largest]) {
+                    largest = j;
+                }
+            }
+            values[base + largest] += ONE - total;
+            starts[i] = start;
+            counts[i] = count;
+        }
+        return new Weights(starts, counts, values, taps);
+    }
+
+    private static void resampleRows(int[] source, int sourceWidth, int[] target, int width, int height,
+                                     Weights weights, boolean alpha) {
+        int[] starts = weights.starts;
+        int[] counts = weights.counts;
+        int[] values = weights.values;
+        int taps = weights.taps;
+        forEachBand(height, sourceWidth + width, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int sourceOffset = y * sourceWidth;
+                int targetOffset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int a = 0, r = 0, g = 0, b = 0;
+                    int start = sourceOffset + starts[x];
+                    int base = x * taps;
+                    for (int j = 0, n = counts[x]; j < n; j++) {
+                        int weight = values[base + j];
+                        int pixel = source[start + j];
+                        a += (pixel >>> 24) * weight;
+                        r += (pixel >> 16 & 0xFF) * weight;
+                        g += (pixel >> 8 & 0xFF) * weight;
+                        b += (pixel & 0xFF) * weight;
+                    }
+                    target[targetOffset + x] = pack(a, r, g, b, alpha);
+                }
+            }
+        });
+    }
+
+    /**
+     * 纵向重采样：每个目标行是若干源行的加权和，按整行累加到各通道的累加数组上，
+     * 内层循环只有连续数组上的移位、乘加，便于 JIT 自动向量化
+     */
+    private static void resampleColumns(int[] source, int[] target, int width, int height, Weights weights,
+                                        boolean alpha) {
+        int[] starts = weights.starts;
+        int[] counts = weights.counts;
+        int[] values = weights.values;
+        int taps = weights.taps;
+        forEachBand(height, width * taps, (from, to) -> {
+            int[] accA = new int[width];
+            int[] accR = new int[width];
+            int[] accG = new int[width];
+            int[] accB = new int[width];
+            for (int y = from; y < to; y++) {
+                Arrays.fill(accA, 0);
+                Arrays.fill(accR, 0);
+                Arrays.fill(accG, 0);
+                Arrays.fill(accB, 0);
+                int base = y * taps;
+                for (int j = 0, n = counts[y]; j < n; j++) {
+                    int weight = values[base + j];
+                    int offset = (starts[y] + j) * width;
+                    if (alpha) {
+                        for (int x = 0; x < width; x++) {
+                            accA[x] += (source[offset + x] >>> 24) * weight;
+                        }
+                    }
+                    for (int x = 0; x < width; x++) {
+                        int pixel = source[offset + x];
+                        accR[x] += (pixel >> 16 & 0xFF) * weight;
+                        accG[x] += (pixel >> 8 & 0xFF) * weight;
+                        accB[x] += (pixel & 0xFF) * weight;
+                    }
+                }
+                int targetOffset = y * width;
+                for (int x = 0; x < width; x++) {
+                    target[targetOffset + x] = pack(accA[x], accR[x], accG[x], accB[x], alpha);
+                }
+            }
+        });
+    }
+
+    /**
+     * 定点累加值舍入并截断到 0 ~ 255；预乘透明度时颜色分量不超过透明度
+     */
+    private static int pack(int a, int r, int g, int b, boolean alpha) {
+        int alphaValue = alpha ? clamp(a, 255) : 255;
+        return alphaValue << 24 | clamp(r, alphaValue) << 16 | clamp(g, alphaValue) << 8 | clamp(b, alphaValue);
+    }
+
+    private static int clamp(int value, int max) {
+        value = (value + HALF) >> PRECISION;
+        return value < 0 ? 0 : value > max ? max : value;
+    }
+
+    private interface Band {
+        void run(int from, int to);
+    }
+
+    /**
+     * 按行带执行，总像素较多且公共 ForkJoinPool 有多个线程时拆分并行
+     *
+     * @param rows 行数
+     * @param rowCost 每行处理的像素数
+     */
+    private static void forEachBand(int rows, int rowCost, Band band) {
+        int rowsPerBand = Math.max(1, BAND_PIXELS / Math.max(1, rowCost));
+        if (rows <= rowsPerBand || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            band.run(0, rows);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new BandTask(band, 0, rows, rowsPerBand));
+    }
+
+    private static final class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Band band;
+        private final int from;
+        private final int to;
+        private final int rowsPerBand;
+
+        BandTask(Band band, int from, int to, int rowsPerBand) {
+            this.band = band;
+            this.from = from;
+            this.to = to;
+            this.rowsPerBand = rowsPerBand;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= rowsPerBand) {
+                band.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BandTask(band, from, middle, rowsPerBand), new BandTask(band, middle, to, rowsPerBand));
+        }
+    }
+}
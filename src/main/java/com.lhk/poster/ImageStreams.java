@@ -0,0 +1,112 @@
+package com.lhk.poster;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 基于流的图片读写
+ * <p>
+ * {@link ImageIO#read(InputStream)} 和 {@link ImageIO#write(java.awt.image.RenderedImage, String, OutputStream)}
+ * 在默认配置下会把流缓存到临时文件，这里统一使用内存缓存的 ImageInputStream / ImageOutputStream，
+ * 整个解码、编码过程不落盘。
+ */
+public final class ImageStreams {
+
+    private ImageStreams() {
+    }
+
+    /**
+     * 从输入流直接解码图片（不关闭输入流）
+     *
+     * @param inputStream 图片数据，例如 HTTP 响应体
+     * @return 解码后的图片
+     * @throws IOException 读取失败或数据不是可识别的图片格式
+     */
+    public static BufferedImage read(InputStream inputStream) throws IOException {
+        ImageInputStream iis = new MemoryCacheImageInputStream(inputStream);
+        // 成功解码时 ImageIO.read 会自行关闭 iis
+        BufferedImage image = ImageIO.read(iis);
+        if (image == null) {
+            iis.close();
+            throw new IOException("无法识别的图片格式");
+        }
+        return image;
+    }
+
+    /**
+     * 将图片以 JPEG 格式（默认编码参数）写入输出流（不关闭输出流），带透明通道的图片先合成到白色背景上
+     *
+     * @param image 图片
+     * @param outputStream 目标输出流
+     * @throws IOException 编码或写入失败
+     * @see ImageEncoder
+     */
+    public static void writeJpeg(BufferedImage image, OutputStream outputStream) throws IOException {
+        ImageEncoder.jpeg().encode(image, outputStream);
+    }
+
+    /**
+     * 合成到白色背景上，去掉透明通道
+     */
+    static BufferedImage toOpaque(BufferedImage image) {
+        BufferedImage opaque = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics2d = opaque.createGraphics();
+        try {
+            graphics2d.setColor(Color.WHITE);
+            graphics2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics2d.drawImage(image, 0, 0, null);
+        } finally {
+            graphics2d.dispose();
+        }
+        return opaque;
+    }
+
+    /**
+     * 将图片以 JPEG 格式编码为字节数组
+     */
+    public static byte[] toJpegBytes(BufferedImage image) throws IOException {
+        return ImageEncoder.jpeg().encode(image);
+    }
+
+    /**
+     * 将图片以 JPEG 格式写入调用方提供的缓冲区，从 buffer 当前 position 开始写入
+     *
+     * @param image 图片
+     * @param buffer 目标缓冲区
+     * @return 写入的字节数
+     * @throws IOException 编码失败
+     * @throws java.nio.BufferOverflowException 缓冲区剩余空间不足
+     */
+    public static int writeJpeg(BufferedImage image, ByteBuffer buffer) throws IOException {
+        return ImageEncoder.jpeg().encode(image, buffer);
+    }
+
+    /**
+     * 写入 ByteBuffer 的输出流适配器
+     */
+    static final class ByteBufferOutputStream extends OutputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.lhk.poster;
+
+import java.util.Arrays;
+
+/**
+ * 断行引擎
+ * <p>
+ * 直接在 char[] 上按码点扫描，行边界以 int 偏移量记录，不产生任何中间字符串。断行机会参照 UAX #14 的简化规则：
+ * <ul>
+ *     <li>换行符处强制断行；</li>
+ *     <li>空格之后、连字符之后（后接字母时）可以断行，行尾空格不计入行宽；</li>
+ *     <li>中日韩文字、全角字符、表情符号前后可以断行；</li>
+ *     <li>闭合标点（，。！？）」等）之前、开启标点（（「《“ 等）之后不断行；</li>
+ *     <li>一个词宽于整行时在字符边界强制断开，代理对不会被拆开。</li>
+ * </ul>
+ * 实例可复用但不是线程安全的，调用方通常为每个线程保留一个实例。
+ */
+public final class LineBreaker {
+
+    private static final int SPACE = 0;
+    private static final int NEWLINE = 1;
+    private static final int OPEN = 2;
+    private static final int CLOSE = 3;
+    private static final int IDEOGRAPHIC = 4;
+    private static final int HYPHEN = 5;
+    private static final int ALPHA = 6;
+    /**
+     * 全角开启 / 闭合标点：对内侧与半角标点相同，对外侧按表意文字处理
+     */
+    private static final int OPEN_WIDE = 7;
+    private static final int CLOSE_WIDE = 8;
+
+    private static final String OPEN_PUNCTUATION = "([{“‘「『《〈【〔（［｛";
+    private static final String CLOSE_PUNCTUATION = ")]}”’」』》〉】〕）］｝，。、；：！？,.;:!?…～·ー々ゝゞ%％";
+
+    /**
+     * BMP 字符分类表，扫描时只做一次数组查找
+     */
+    private static final byte[] BMP_CLASSES = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            BMP_CLASSES[c] = (byte) computeClass(c);
+        }
+    }
+
+    private char[] chars = new char[256];
+    private char[] text;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    /**
+     * 对字符串断行，字符串内容被复制到实例内部复用的缓冲区
+     *
+     * @param text 文本
+     * @param metrics 字体度量表
+     * @param maxWidth 最大行宽
+     * @return this，通过 {@link #getChars()} 和行偏移量访问结果
+     */
+    public LineBreaker layout(CharSequence text, FontMetricsTable metrics, int maxWidth) {
+        int length = text.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        if (text instanceof String) {
+            ((String) text).getChars(0, length, chars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = text.charAt(i);
+            }
+        }
+        return layout(chars, 0, length, metrics, maxWidth);
+    }
+
+    /**
+     * 对字符数组的 [offset, offset + length) 区间断行，不复制数组
+     *
+     * @param text 文本
+     * @param offset 起始偏移
+     * @param length 长度
+     * @param metrics 字体度量表
+     * @param maxWidth 最大行宽
+     * @return this
+     */
+    public LineBreaker layout(char[] text, int offset, int length, FontMetricsTable metrics, int maxWidth) {
+        this.text = text;
+        this.count = 0;
+        int end = offset + length;
+
+        int lineStart = offset;
+        int lineWidth = 0;
+        // 最近一个断行机会：行可以在 lastBreak 之前结束，下一行从 lastBreak 开始
+        int lastBreak = -1;
+        int widthBeforeBreak = 0;
+        int prevClass = NEWLINE;
+
+        int i = offset;
+        while (i < end) {
+            int codePoint = Character.codePointAt(text, i, end);
+            int charCount = Character.charCount(codePoint);
+            int cls = classify(codePoint);
+
+            if (cls == NEWLINE) {
+                addLine(lineStart, i);
+                // \r\n 视为一个换行
+                if (codePoint == '\r' && i + 1 < end && text[i + 1] == '\n') {
+                    i++;
+                }
+                i += 1;
+                lineStart = i;
+                lineWidth = 0;
+                lastBreak = -1;
+                prevClass = NEWLINE;
+                continue;
+            }
+
+            if (i > lineStart && isBreakOpportunity(prevClass, cls)) {
+                lastBreak = i;
+                widthBeforeBreak = lineWidth;
+            }
+
+            int charWidth = metrics.charWidth(codePoint);
+            lineWidth += charWidth;
+
+            // 行尾空格悬挂在行外，不触发断行
+            if (lineWidth > maxWidth && cls != SPACE) {
+                if (lastBreak > lineStart) {
+                    addLine(lineStart, lastBreak);
+                    lineStart = lastBreak;
+                    lineWidth -= widthBeforeBreak;
+                    if (lineWidth > maxWidth && i > lineStart) {
+                        // 断行后剩余部分本身仍超宽（超长单词），在当前字符前再断开
+                        addLine(lineStart, i);
+                        lineStart = i;
+                        lineWidth = charWidth;
+                    }
+                } else if (i > lineStart) {
+                    // 没有断行机会（超长单词），在当前字符前强制断开
+                    addLine(lineStart, i);
+                    lineStart = i;
+                    lineWidth = charWidth;
+                }
+                lastBreak = -1;
+            }
+
+            prevClass = cls;
+            i += charCount;
+        }
+        if (lineStart < end) {
+            addLine(lineStart, end);
+        }
+        return this;
+    }
+
+    /**
+     * 最近一次 layout 使用的字符数组，行偏移量相对于该数组
+     */
+    public char[] getChars() {
+        return text;
+    }
+
+    public int getLineCount() {
+        return count;
+    }
+
+    /**
+     * 第 line 行的起始偏移（包含）
+     */
+    public int getLineStart(int line) {
+        return starts[line];
+    }
+
+    /**
+     * 第 line 行的结束偏移（不包含），已去掉行尾空格
+     */
+    public int getLineEnd(int line) {
+        return ends[line];
+    }
+
+    private void addLine(int start, int end) {
+        while (end > start && classify(text[end - 1]) == SPACE) {
+            end--;
+        }
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    private static boolean isBreakOpportunity(int prev, int cur) {
+        if (cur == SPACE || cur == CLOSE || cur == CLOSE_WIDE || prev == OPEN || prev == OPEN_WIDE) {
+            return false;
+        }
+        if (prev == SPACE) {
+            return true;
+        }
+        if (prev == HYPHEN) {
+            return cur == ALPHA;
+        }
+        return prev == IDEOGRAPHIC || prev == CLOSE_WIDE || cur == IDEOGRAPHIC || cur == OPEN_WIDE;
+    }
+
+    private static int classify(int codePoint) {
+        return codePoint <= Character.MAX_VALUE ? BMP_CLASSES[codePoint] : computeClass(codePoint);
+    }
+
+    private static int computeClass(int codePoint) {
+        if (codePoint == '\n' || codePoint == '\r' || codePoint == 0x2028 || codePoint == 0x2029) {
+            return NEWLINE;
+        }
+        if (codePoint == ' ' || codePoint == '\t' || codePoint == 0x3000) {
+            return SPACE;
+        }
+        if (codePoint < 0x10000) {
+            char c = (char) codePoint;
+            if (OPEN_PUNCTUATION.indexOf(c) >= 0) {
+                return c >= 0x2E80 ? OPEN_WIDE : OPEN;
+            }
+            if (CLOSE_PUNCTUATION.indexOf(c) >= 0) {
+                return c >= 0x2E80 ? CLOSE_WIDE : CLOSE;
+            }
+        }
+        if (codePoint == '-' || codePoint == 0x2010) {
+            return HYPHEN;
+        }
+        if ((codePoint >= 0x2E80 && codePoint <= 0x9FFF)      // 部首、假名、CJK 统一表意文字等
+                || (codePoint >= 0xAC00 && codePoint <= 0xD7AF) // 韩文音节
+                || (codePoint >= 0xF900 && codePoint <= 0xFAFF) // CJK 兼容表意文字
+                || (codePoint >= 0xFF01 && codePoint <= 0xFF60) // 全角字符
+                || (codePoint >= 0x1F300 && codePoint <= 0x1FAFF) // 表情符号
+                || (codePoint >= 0x20000 && codePoint <= 0x3FFFF)) { // CJK 扩展 B 及以后（代理对）
+            return IDEOGRAPHIC;
+        }
+        return ALPHA;
+    }
+}
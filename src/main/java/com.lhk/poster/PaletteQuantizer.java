@@ -0,0 +1,116 @@
+package com.lhk.poster;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+/**
+ * 调色板量化（流行色算法）
+ * <p>
+ * 把颜色按每通道 5 位归入 32768 个桶，取像素最多的若干个桶的平均色作为调色板，
+ * 每个桶只做一次最近色查找。海报以大面积纯色背景和文字为主，256 色通常足够，PNG 体积可减少一半以上。
+ * 透明通道会被忽略。
+ */
+final class PaletteQuantizer {
+
+    private static final int BUCKETS = 1 << 15;
+
+    private PaletteQuantizer() {
+    }
+
+    /**
+     * @param image 原图
+     * @param maxColors 调色板最大颜色数（2 ~ 256）
+     * @return TYPE_BYTE_INDEXED 图片
+     */
+    static BufferedImage quantize(BufferedImage image, int maxColors) {
+        if (maxColors < 2 || maxColors > 256) {
+            throw new IllegalArgumentException("调色板颜色数必须在 2 ~ 256 之间: " + maxColors);
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+
+        int[] counts = new int[BUCKETS];
+        long[] sumR = new long[BUCKETS];
+        long[] sumG = new long[BUCKETS];
+        long[] sumB = new long[BUCKETS];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int bucket = bucket(rgb);
+                counts[bucket]++;
+                sumR[bucket] += (rgb >> 16) & 0xFF;
+                sumG[bucket] += (rgb >> 8) & 0xFF;
+                sumB[bucket] += rgb & 0xFF;
+            }
+        }
+
+        // 按像素数从多到少选出调色板桶：高位放计数，低位放桶号，排序一次即可
+        int used = 0;
+        long[] ranked = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (counts[bucket] > 0) {
+                ranked[used++] = ((long) counts[bucket] << 16) | bucket;
+            }
+        }
+        Arrays.sort(ranked, 0, used);
+        int size = Math.min(maxColors, used);
+        byte[] reds = new byte[size];
+        byte[] greens = new byte[size];
+        byte[] blues = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int bucket = (int) (ranked[used - 1 - i] & 0xFFFF);
+            reds[i] = (byte) (sumR[bucket] / counts[bucket]);
+            greens[i] = (byte) (sumG[bucket] / counts[bucket]);
+            blues[i] = (byte) (sumB[bucket] / counts[bucket]);
+        }
+
+        IndexColorModel colorModel = new IndexColorModel(8, size, reds, greens, blues);
+        BufferedImage indexed = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        byte[] data = ((DataBufferByte) indexed.getRaster().getDataBuffer()).getData();
+
+        // 桶到调色板下标的映射，-1 表示尚未计算
+        short[] mapping = new short[BUCKETS];
+        Arrays.fill(mapping, (short) -1);
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int bucket = bucket(row[x]);
+                short index = mapping[bucket];
+                if (index < 0) {
+                    index = (short) nearest(row[x], reds, greens, blues);
+                    mapping[bucket] = index;
+                }
+                data[offset + x] = (byte) index;
+            }
+        }
+        return indexed;
+    }
+
+    private static int bucket(int rgb) {
+        return ((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x03E0) | ((rgb >> 3) & 0x001F);
+    }
+
+    private static int nearest(int rgb, byte[] reds, byte[] greens, byte[] blues) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < reds.length; i++) {
+            int dr = r - (reds[i] & 0xFF);
+            int dg = g - (greens[i] & 0xFF);
+            int db = b - (blues[i] & 0xFF);
+            int distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
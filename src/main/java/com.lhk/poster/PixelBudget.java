@@ -0,0 +1,174 @@
+package com.lhk.poster;
+
+import java.awt.image.BufferedImage;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 像素内存准入控制
+ * <p>
+ * 所有解码共享一个字节预算。{@link CoverDecoder} 读完图片头、分配像素缓冲区之前，按抽样后的解码尺寸和缩放输出估算
+ * 本次需要的内存并申请额度：额度不足时排队等待（公平顺序），超过等待时间仍不足则以 {@link BudgetExceededException}
+ * 拒绝。突发的一批大图因此按预算分批解码，堆占用保持平稳，而不是同时分配直至 OOM。
+ * <p>
+ * 额度以 KB 为单位计数，单次申请超过总预算的图片应由调用方直接拒绝（见 {@link #fits(long)}）。
+ * <p>
+ * 解码完成后，封面和画布在绘制、编码期间同样占用内存：渲染入口在分配画布之前以 {@link #acquireRender} 申请
+ * 封面加画布的额度，编码完成后才归还，批量的大图渲染因此也受同一个预算约束。
+ */
+public final class PixelBudget {
+
+    /**
+     * 默认等待额度的时间
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000L;
+
+    private static final int UNIT = 1024;
+
+    private static volatile PixelBudget defaultInstance =
+            new PixelBudget(Runtime.getRuntime().maxMemory() / 4, DEFAULT_TIMEOUT_MILLIS);
+
+    private final long maxBytes;
+    private final long timeoutMillis;
+    private final int totalUnits;
+    private final Semaphore units;
+
+    /**
+     * @param maxBytes 同时解码可占用的字节数
+     * @param timeoutMillis 额度不足时的最长等待时间，0 表示不等待
+     */
+    public PixelBudget(long maxBytes, long timeoutMillis) {
+        if (maxBytes < UNIT) {
+            throw new IllegalArgumentException("像素内存预算不能小于 " + UNIT + " 字节");
+        }
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("等待时间不能为负数");
+        }
+        this.totalUnits = (int) Math.min(Integer.MAX_VALUE, maxBytes / UNIT);
+        this.maxBytes = (long) totalUnits * UNIT;
+        this.timeoutMillis = timeoutMillis;
+        this.units = new Semaphore(totalUnits, true);
+    }
+
+    /**
+     * 全局共享的预算，默认为最大堆的四分之一
+     */
+    public static PixelBudget getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 替换全局共享的预算
+     */
+    public static void setDefault(PixelBudget budget) {
+        defaultInstance = Objects.requireNonNull(budget);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * 当前已占用的字节数
+     */
+    public long getUsedBytes() {
+        return (long) (totalUnits - units.availablePermits()) * UNIT;
+    }
+
+    /**
+     * 正在排队等待额度的线程数（估计值）
+     */
+    public int getQueueLength() {
+        return units.getQueueLength();
+    }
+
+    /**
+     * 申请量是否不超过总预算
+     */
+    public boolean fits(long bytes) {
+        return toUnits(bytes) <= totalUnits;
+    }
+
+    /**
+     * 申请额度，不足时最多等待 timeoutMillis
+     *
+     * @param bytes 估算的字节数
+     * @return 额度凭证，关闭时归还
+     * @throws IllegalArgumentException 申请量超过总预算
+     * @throws BudgetExceededException 等待超时
+     * @throws InterruptedIOException 等待时线程被中断
+     */
+    public Permit acquire(long bytes) throws InterruptedIOException {
+        int requested = toUnits(bytes);
+        if (requested > totalUnits) {
+            throw new IllegalArgumentException("申请的像素内存超过总预算: " + bytes + " > " + maxBytes);
+        }
+        try {
+            if (!units.tryAcquire(requested, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new BudgetExceededException(bytes, getUsedBytes(), maxBytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException exception = new InterruptedIOException("等待像素内存额度时线程被中断");
+            exception.initCause(e);
+            throw exception;
+        }
+        return new Permit(requested);
+    }
+
+    /**
+     * 为一次绘制和编码申请额度：封面、画布以及编码时的中间结果（按画布大小计），每像素按 4 字节计。
+     * 画布尺寸固定，估算超过总预算时按总预算申请，不拒绝
+     *
+     * @param cover 封面，可为空
+     * @return 额度凭证，编码完成后关闭
+     * @throws BudgetExceededException 等待超时
+     * @throws InterruptedIOException 等待时线程被中断
+     */
+    public Permit acquireRender(BufferedImage cover, int canvasWidth, int canvasHeight) throws InterruptedIOException {
+        long coverPixels = cover == null ? 0L : (long) cover.getWidth() * cover.getHeight();
+        long bytes = (coverPixels + 2L * canvasWidth * canvasHeight) * 4;
+        return acquire(Math.min(bytes, maxBytes));
+    }
+
+    private static int toUnits(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1L, (bytes + UNIT - 1) / UNIT));
+    }
+
+    /**
+     * 额度凭证，只能归还一次
+     */
+    public final class Permit implements AutoCloseable {
+        private int held;
+
+        private Permit(int held) {
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            if (held > 0) {
+                units.release(held);
+                held = 0;
+            }
+        }
+    }
+
+    /**
+     * 等待像素内存额度超时，属于过载而非请求本身的错误，调用方可稍后重试（例如返回 503）
+     */
+    public static class BudgetExceededException extends RejectedExecutionException {
+        private static final long serialVersionUID = 1L;
+
+        BudgetExceededException(long requested, long used, long max) {
+            super("像素内存预算不足: 申请 " + requested + " 字节，已占用 " + used + " / " + max);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.lhk.poster;
+
+import com.google.zxing.WriterException;
+import com.lhk.QR.LinkToQRCodePosterToBase64;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 海报批量生成器
+ * <p>
+ * 每张海报分两个阶段执行：封面获取（{@link RemoteImageCache} 或 I/O 线程池）和解码、绘制、编码（渲染线程池），
+ * 两个阶段在不同线程池上流水线式重叠，下载等待期间 CPU 仍在渲染其他海报。
+ * 同时在途的海报数量受 maxInFlight 限制，输入序列按需拉取，不会一次性堆积全部任务。
+ */
+public class PosterBatchRenderer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PosterBatchRenderer.class);
+
+    private final RemoteImageCache imageCache;
+    private final Executor ioExecutor;
+    private final Executor renderExecutor;
+    private final int maxInFlight;
+    private final boolean ownsExecutors;
+
+    /**
+     * 使用与 CPU 核数相同的渲染线程
+     */
+    public PosterBatchRenderer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 创建自带线程池的批量生成器，close() 时关闭线程池
+     *
+     * @param renderThreads 渲染线程数，同时也是本地封面读取线程数，最大在途数为其8倍
+     */
+    public PosterBatchRenderer(int renderThreads) {
+        if (renderThreads <= 0) {
+            throw new IllegalArgumentException("渲染线程数必须大于0");
+        }
+        this.imageCache = RemoteImageCache.getDefault();
+        this.ioExecutor = Executors.newFixedThreadPool(renderThreads, daemonThreadFactory("poster-io-"));
+        this.renderExecutor = Executors.newFixedThreadPool(renderThreads, daemonThreadFactory("poster-render-"));
+        this.maxInFlight = renderThreads * 8;
+        this.ownsExecutors = true;
+    }
+
+    /**
+     * 使用调用方提供的线程池，close() 时不会关闭它们
+     *
+     * @param imageCache 网络封面缓存
+     * @param ioExecutor 读取本地封面的线程池
+     * @param renderExecutor 执行解码、绘制、编码的线程池
+     * @param maxInFlight 最大在途海报数（背压上限）
+     */
+    public PosterBatchRenderer(RemoteImageCache imageCache, Executor ioExecutor, Executor renderExecutor, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("最大在途数必须大于0");
+        }
+        this.imageCache = imageCache;
+        this.ioExecutor = ioExecutor;
+        this.renderExecutor = renderExecutor;
+        this.maxInFlight = maxInFlight;
+        this.ownsExecutors = false;
+    }
+
+    /**
+     * 批量生成海报，每完成一张（成功或失败）即回调一次 sink，方法在全部完成后返回。
+     * <p>
+     * sink 的调用是串行的，调用方无需自行加锁；结果按完成顺序而非输入顺序到达，可通过
+     * {@link PosterResult#getIndex()} 对应回输入。单张海报的失败（包括提交时同步抛出的异常）都以
+     * {@link PosterResult#getError()} 回调；输入序列本身抛出异常时，等在途海报全部回调后再抛出。
+     *
+     * @param specs 海报参数序列，按需拉取
+     * @param sink 结果回调
+     * @return 处理的海报数量
+     * @throws InterruptedException 等待过程中线程被中断，此时在途海报仍会继续回调 sink
+     */
+    public long renderAll(Iterator<PosterSpec> specs, Consumer<PosterResult> sink) throws InterruptedException {
+        Semaphore permits = new Semaphore(maxInFlight);
+        Object sinkLock = new Object();
+        long index = 0;
+        while (true) {
+            permits.acquire();
+            PosterSpec spec;
+            try {
+                if (!specs.hasNext()) {
+                    permits.release();
+                    break;
+                }
+                spec = specs.next();
+            } catch (RuntimeException | Error e) {
+                permits.release();
+                awaitInFlight(permits);
+                throw e;
+            }
+            long current = index++;
+            CompletableFuture<byte[]> rendered;
+            try {
+                rendered = loadCover(spec)
+                        .whenComplete((cover, error) -> {
+                            // 渲染阶段的失败由 renderOne 计入指标，这里只记录封面获取失败
+                            if (error != null) {
+                                PosterMetrics.getDefault().recordFailure(error);
+                            }
+                        })
+                        .thenApplyAsync(cover -> renderOne(spec, cover), renderExecutor);
+            } catch (RuntimeException e) {
+                PosterMetrics.getDefault().recordFailure(e);
+                rendered = new CompletableFuture<>();
+                rendered.completeExceptionally(e);
+            }
+            rendered.whenComplete((bytes, error) -> {
+                try {
+                    synchronized (sinkLock) {
+                        sink.accept(new PosterResult(current, spec, bytes, unwrap(error)));
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("批量生成结果回调失败: {}", e.getMessage(), e);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+        // 等待所有在途任务完成
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+        return index;
+    }
+
+    /**
+     * 中止前等待所有在途任务完成并回调，保证方法返回后不再调用 sink
+     */
+    private void awaitInFlight(Semaphore permits) {
+        permits.acquireUninterruptibly(maxInFlight);
+        permits.release(maxInFlight);
+    }
+
+    /**
+     * 批量生成海报
+     *
+     * @see #renderAll(Iterator, Consumer)
+     */
+    public long renderAll(Stream<PosterSpec> specs, Consumer<PosterResult> sink) throws InterruptedException {
+        return renderAll(specs.iterator(), sink);
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutors) {
+            ((ExecutorService) ioExecutor).shutdown();
+            ((ExecutorService) renderExecutor).shutdown();
+        }
+    }
+
+    /**
+     * 获取封面：网络封面走 {@link RemoteImageCache}（连接复用、同 URL 合并、重复封面命中缓存），
+     * 本地封面在 I/O 线程池上读取字节。两种情况的解码都在渲染线程池上执行
+     */
+    CompletableFuture<BufferedImage> loadCover(PosterSpec spec) {
+        int coverWidth;
+        int coverHeight;
+        try {
+            BufferedImage bgImage = AssetCache.get(AssetCache.DEFAULT_BG);
+            coverWidth = PosterUtil.coverWidth(bgImage);
+            coverHeight = PosterUtil.coverVisibleHeight(bgImage);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (StringUtils.isNotEmpty(spec.getCoverUrl())) {
+            return imageCache.getAsync(spec.getCoverUrl(), coverWidth, coverHeight, renderExecutor);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (StringUtils.isEmpty(spec.getCoverPath())) {
+                    throw new IllegalArgumentException("封面图URL和路径不能同时为空");
+                }
+                return Files.readAllBytes(Paths.get(spec.getCoverPath()));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, ioExecutor).thenApplyAsync(bytes -> {
+            try {
+                return CoverDecoder.getDefault().decode(bytes, coverWidth, coverHeight);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, renderExecutor);
+    }
+
+    /**
+     * 渲染阶段：绘制并编码为 JPEG
+     */
+    private static byte[] renderOne(PosterSpec spec, BufferedImage picImage) {
+        try {
+            return PosterMetrics.getDefault().record(() -> {
+                PixelBudget.Permit permit = acquireRender(picImage);
+                try {
+                    BufferedImage posterImage = render(spec, picImage);
+                    try {
+                        return ImageStreams.toJpegBytes(posterImage);
+                    } finally {
+                        CanvasPool.getDefault().release(posterImage);
+                    }
+                } finally {
+                    permit.close();
+                }
+            });
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 在默认模板上绘制并编码一张海报所需的像素内存额度，编码完成后关闭
+     */
+    static PixelBudget.Permit acquireRender(BufferedImage picImage) throws IOException {
+        PosterTemplate template = PosterTemplate.getDefault();
+        return PixelBudget.getDefault().acquireRender(picImage, template.getWidth(), template.getHeight());
+    }
+
+    /**
+     * 在默认背景上绘制一张海报（不编码）
+     */
+    static BufferedImage render(PosterSpec spec, BufferedImage picImage) throws IOException, WriterException {
+        // 未指定二维码内容时使用默认二维码，它和背景、页脚一起取自预合成底图
+        BufferedImage qrcodeImage = null;
+        if (StringUtils.isNotEmpty(spec.getQrPayload())) {
+            BufferedImage defaultQrcode = AssetCache.get(AssetCache.DEFAULT_QRCODE);
+            qrcodeImage = LinkToQRCodePosterToBase64.getSharedQrCodeImage(spec.getQrPayload(),
+                    defaultQrcode.getWidth(), defaultQrcode.getHeight());
+        }
+        return PosterUtil.render(picImage, spec.getZh(), spec.getEn(), qrcodeImage);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
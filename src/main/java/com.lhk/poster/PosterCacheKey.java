@@ -0,0 +1,116 @@
+package com.lhk.poster;
+
+import cn.hutool.crypto.digest.DigestUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 生成结果缓存的键
+ * <p>
+ * 把影响输出字节的全部输入（模板指纹、字体指纹、编码参数、封面、文案、二维码内容、本地文件版本）按固定顺序写成规范文本，
+ * 每个字段带名称和长度前缀，不同输入不会拼出相同文本；键是规范文本的 SHA-256。
+ * 本地文件以 (绝对路径, 大小, 修改时间) 作为版本，网络封面只以 URL 参与，内容更新依赖缓存有效期。
+ * <pre>
+ * String key = PosterCacheKey.of(PosterTemplate.getDefault())
+ *         .encoder(encoder)
+ *         .spec(spec)
+ *         .build();
+ * </pre>
+ */
+public final class PosterCacheKey {
+
+    /**
+     * 规范文本格式或渲染实现变化导致输出不同时递增，使旧缓存全部失效
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private final StringBuilder canonical = new StringBuilder(256).append("v").append(FORMAT_VERSION).append(';');
+
+    private PosterCacheKey() {
+    }
+
+    /**
+     * 以模板名称、模板指纹和字体指纹开头的键
+     *
+     * @throws IOException 模板素材无法读取
+     */
+    public static PosterCacheKey of(PosterTemplate template) throws IOException {
+        return new PosterCacheKey()
+                .add("template", template.getName())
+                .add("fingerprint", template.getFingerprint())
+                .add("fonts", FontRegistry.getFingerprint());
+    }
+
+    /**
+     * 追加一个字段，null 与空字符串视为不同的值
+     */
+    public PosterCacheKey add(String name, String value) {
+        canonical.append(name).append('=');
+        if (value == null) {
+            canonical.append('-');
+        } else {
+            canonical.append(value.length()).append(':').append(value);
+        }
+        canonical.append(';');
+        return this;
+    }
+
+    public PosterCacheKey add(String name, long value) {
+        return add(name, Long.toString(value));
+    }
+
+    /**
+     * 追加编码参数（实际使用的格式、质量、渐进式、色度抽样、去元数据、调色板）
+     */
+    public PosterCacheKey encoder(ImageEncoder encoder) {
+        return add("format", encoder.getEffectiveFormat().name())
+                .add("quality", encoder.getQuality() != null ? encoder.getQuality().toString() : null)
+                .add("progressive", Boolean.toString(encoder.isProgressive()))
+                .add("chroma", encoder.getChromaSubsampling() != null ? encoder.getChromaSubsampling().name() : null)
+                .add("strip", Boolean.toString(encoder.isStripMetadata()))
+                .add("palette", encoder.getPaletteSize());
+    }
+
+    /**
+     * 追加单张海报的参数，调用方自定义的 id 不影响输出，不参与
+     *
+     * @throws IOException 本地封面无法读取文件属性
+     */
+    public PosterCacheKey spec(PosterSpec spec) throws IOException {
+        add("cover", spec.getCoverUrl());
+        file("coverPath", spec.getCoverPath());
+        return add("zh", spec.getZh())
+                .add("en", spec.getEn())
+                .add("qr", spec.getQrPayload());
+    }
+
+    /**
+     * 追加本地文件及其版本，路径为空时只记录空值
+     *
+     * @throws IOException 文件不存在或无法读取属性
+     */
+    public PosterCacheKey file(String name, String path) throws IOException {
+        if (path == null || path.isEmpty()) {
+            return add(name, (String) null);
+        }
+        Path file = Paths.get(path).toAbsolutePath();
+        return add(name, file.toString())
+                .add(name + ".size", Files.size(file))
+                .add(name + ".mtime", Files.getLastModifiedTime(file).toMillis());
+    }
+
+    /**
+     * @return 64 位十六进制 SHA-256
+     */
+    public String build() {
+        return DigestUtil.sha256Hex(canonical.toString());
+    }
+
+    @Override
+    public String toString() {
+        return canonical.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package com.lhk.poster;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 绑定到模板插槽的单次渲染数据
+ * <p>
+ * 文本插槽和图片插槽分开存放，键为模板中声明的 slot 名称，例如默认模板的 cover / zh / en / qrcode。
+ */
+public class PosterData {
+
+    private final Map<String, String> texts = new HashMap<>();
+    private final Map<String, BufferedImage> images = new HashMap<>();
+
+    public PosterData text(String slot, String value) {
+        texts.put(slot, value);
+        return this;
+    }
+
+    public PosterData image(String slot, BufferedImage value) {
+        images.put(slot, value);
+        return this;
+    }
+
+    public String getText(String slot) {
+        return texts.get(slot);
+    }
+
+    public BufferedImage getImage(String slot) {
+        return images.get(slot);
+    }
+}
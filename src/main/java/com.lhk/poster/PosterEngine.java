@@ -0,0 +1,121 @@
+package com.lhk.poster;
+
+import com.google.zxing.WriterException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 海报渲染引擎的启动预热
+ * <p>
+ * 部署后的第一张海报要花几秒：ImageIO 插件扫描、JPEG 编解码器的本地库初始化、字体文件解析和字形栅格化、
+ * ZXing 和 HttpClient 的类加载都发生在第一次请求上，之后的海报只要几十毫秒。{@link #warmUp()} 在接收流量之前
+ * 用自带的 poster/ 素材合成一张海报并编码一次，把这些初始化提前到启动阶段，耗时和首张海报完成时的 JVM 运行时间
+ * 记录到 {@link PosterMetrics}。Spring 应用由自动配置在所有组件创建完成后调用（lhk.poster.warm-up.enabled）。
+ * <p>
+ * 预热不访问网络，也不写文件，只加载类、初始化编解码器和填充模板缓存，因此可以作为生成 CDS 归档的训练运行：
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=poster.jsa -cp &lt;classpath&gt; com.lhk.poster.PosterEngine
+ * java -XX:SharedArchiveFile=poster.jsa -cp &lt;classpath&gt; com.lhk.Main
+ * </pre>
+ * CDS 只归档 jar 中的类，classpath 不能包含目录（例如 target/classes），Spring Boot 的可执行 jar 需先解压为普通 jar。
+ * 需要同时归档 Spring 的类时，以 lhk.poster.warm-up.exit=true 启动应用，预热完成、应用就绪后即退出。
+ */
+public final class PosterEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PosterEngine.class);
+
+    /**
+     * 预热海报的封面，取自自带素材
+     */
+    public static final String WARM_UP_COVER = "poster/bargain_header/bargain_header1.jpg";
+
+    private static final PosterSpec WARM_UP_SPEC = PosterSpec.builder()
+            .id("warm-up")
+            .zh("海报预热：中文排版与自动换行，覆盖常用的标点符号。")
+            .en("Poster warm-up: Latin text, line breaking and metrics.")
+            .qrPayload("https://example.com/poster/warm-up")
+            .build();
+
+    private static volatile long warmUpNanos = -1;
+
+    private PosterEngine() {
+    }
+
+    /**
+     * 以默认 JPEG 编码器预热
+     *
+     * @see #warmUp(ImageEncoder)
+     */
+    public static long warmUp() throws IOException {
+        return warmUp(ImageEncoder.jpeg());
+    }
+
+    /**
+     * 用自带素材合成一张带二维码的海报，并以给定编码器编码一次；已预热过时直接返回
+     *
+     * @param encoder 线上使用的编码器
+     * @return 预热耗时（毫秒）
+     * @throws IOException 自带素材读取或编码失败
+     */
+    public static synchronized long warmUp(ImageEncoder encoder) throws IOException {
+        if (warmUpNanos >= 0) {
+            return TimeUnit.NANOSECONDS.toMillis(warmUpNanos);
+        }
+        long start = System.nanoTime();
+        ImageIO.getReaderFormatNames();
+        ImageFetcher.getDefault();
+
+        BufferedImage bgImage = AssetCache.get(AssetCache.DEFAULT_BG);
+        BufferedImage cover = CoverDecoder.getDefault().decode(readResource(WARM_UP_COVER),
+                PosterUtil.coverWidth(bgImage), PosterUtil.coverVisibleHeight(bgImage));
+        BufferedImage posterImage;
+        try {
+            posterImage = PosterBatchRenderer.render(WARM_UP_SPEC, cover);
+        } catch (WriterException e) {
+            throw new IOException("预热二维码生成失败: " + e.getMessage(), e);
+        }
+        try {
+            encoder.encode(posterImage, NullOutputStream.NULL_OUTPUT_STREAM);
+        } finally {
+            CanvasPool.getDefault().release(posterImage);
+        }
+        FontRegistry.warmUp();
+
+        warmUpNanos = System.nanoTime() - start;
+        PosterMetrics.getDefault().recordWarmUp(warmUpNanos);
+        logger.info("海报引擎预热完成，耗时 {} ms", TimeUnit.NANOSECONDS.toMillis(warmUpNanos));
+        return TimeUnit.NANOSECONDS.toMillis(warmUpNanos);
+    }
+
+    /**
+     * 是否已完成预热
+     */
+    public static boolean isWarmedUp() {
+        return warmUpNanos >= 0;
+    }
+
+    /**
+     * 预热后退出，用于 CDS 归档的训练运行
+     */
+    public static void main(String[] args) throws IOException {
+        warmUp();
+        System.exit(0);
+    }
+
+    private static byte[] readResource(String resource) throws IOException {
+        try (InputStream inputStream = PosterEngine.class.getClassLoader().getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("素材不存在: " + resource);
+            }
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+}
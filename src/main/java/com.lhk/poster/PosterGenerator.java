@@ -1,7 +1,11 @@
 package com.lhk.poster;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +26,9 @@ public class PosterGenerator {
         
         // 示例3：使用自定义参数生成海报
 //        generateWithCustomParams();
+
+        // 示例4：批量生成海报
+//        generateBatch();
     }
     
     /**
@@ -106,4 +113,35 @@ public class PosterGenerator {
             logger.error("生成自定义海报失败: {}", e.getMessage(), e);
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 示例4：批量生成海报
+     */
+    private static void generateBatch() {
+        try (PosterBatchRenderer renderer = new PosterBatchRenderer()) {
+            Stream<PosterSpec> specs = IntStream.range(0, 100).mapToObj(i -> PosterSpec.builder()
+                    .id("user-" + i)
+                    .coverUrl("https://picsum.photos/800/600")
+                    .zh("编程改变世界，创新引领未来。")
+                    .en("Programming changes the world, innovation leads the future.")
+                    .qrPayload("https://moshanghong.xin/invite/" + i)
+                    .build());
+
+            Path outputDir = Paths.get("E:/posters");
+            long total = renderer.renderAll(specs, result -> {
+                if (!result.isSuccess()) {
+                    logger.error("海报 {} 生成失败: {}", result.getSpec().getId(), result.getError().getMessage());
+                    return;
+                }
+                try {
+                    Files.write(outputDir.resolve(result.getSpec().getId() + ".jpg"), result.getBytes());
+                } catch (IOException e) {
+                    logger.error("海报 {} 保存失败: {}", result.getSpec().getId(), e.getMessage());
+                }
+            });
+            logger.info("批量生成完成，共 {} 张", total);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.lhk.poster;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次排版的结果：画布尺寸和按顺序排列的绘制操作
+ * <p>
+ * 排版（确定每个元素的位置、断行）与绘制分离，同一结果可以绘制到任意画布上，
+ * 大画布由 {@link TiledRenderer} 分块并行重放。
+ */
+public final class PosterLayout {
+
+    private final int width;
+    private final int height;
+    private final List<DrawOp> ops;
+    /**
+     * 可取自预合成底图的操作
+     */
+    private final boolean[] staticOps;
+    /**
+     * 参与预合成的图层序号位图，相同的键对应相同的底图
+     */
+    private final long staticKey;
+
+    PosterLayout(int width, int height, List<DrawOp> ops, boolean[] staticOps, long staticKey) {
+        this.width = width;
+        this.height = height;
+        this.ops = Collections.unmodifiableList(ops);
+        this.staticOps = staticOps;
+        this.staticKey = staticKey;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public List<DrawOp> getOps() {
+        return ops;
+    }
+
+    /**
+     * 按顺序执行全部绘制操作
+     */
+    public void draw(Graphics2D graphics2d) {
+        for (DrawOp op : ops) {
+            op.draw(graphics2d);
+        }
+    }
+
+    long getStaticKey() {
+        return staticKey;
+    }
+
+    boolean isStatic(int index) {
+        return staticOps[index];
+    }
+
+    /**
+     * 按顺序执行全部绘制操作，大画布分块并行绘制
+     */
+    public void draw(BufferedImage canvas) {
+        TiledRenderer.getDefault().draw(canvas, ops);
+    }
+
+    /**
+     * 只绘制静态操作，用于合成底图
+     */
+    void drawStatic(BufferedImage canvas) {
+        TiledRenderer.getDefault().draw(canvas, select(true));
+    }
+
+    /**
+     * 只绘制动态操作，画布应是对应底图的副本
+     */
+    void drawDynamic(BufferedImage canvas) {
+        TiledRenderer.getDefault().draw(canvas, select(false));
+    }
+
+    private List<DrawOp> select(boolean precomposed) {
+        List<DrawOp> selected = new ArrayList<>(ops.size());
+        for (int i = 0; i < ops.size(); i++) {
+            if (staticOps[i] == precomposed) {
+                selected.add(ops.get(i));
+            }
+        }
+        return selected;
+    }
+}
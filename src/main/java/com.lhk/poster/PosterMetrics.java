@@ -0,0 +1,337 @@
+package com.lhk.poster;
+
+import com.google.zxing.WriterException;
+import com.lhk.QR.QrCodeCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 海报渲染的 Micrometer 指标
+ * <p>
+ * 默认注册到 {@link Metrics#globalRegistry}：Spring Boot 应用引入 actuator 与 micrometer-registry-prometheus 后，
+ * 自动配置的注册表会加入全局注册表（management.metrics.use-global-registry 默认开启），无需额外配置即可在
+ * /actuator/prometheus 看到以下指标：
+ * <ul>
+ *     <li>poster.render.stage{stage}：各阶段耗时直方图，stage 为 fetch / decode / layout / draw / encode / write；</li>
+ *     <li>poster.render{result}：整张海报耗时，result 为 success / failure；</li>
+ *     <li>poster.render.failures{cause}：失败次数，按原因分类；</li>
+ *     <li>poster.render.inflight、poster.render.canvas.bytes：正在渲染的海报数及其画布占用的像素内存；</li>
+ *     <li>poster.admission.bytes、poster.admission.queued：{@link PixelBudget} 已占用的解码内存和排队等待额度的线程数；</li>
+ *     <li>poster.cache.requests{cache, result}、poster.cache.evictions{cache}、poster.cache.bytes{cache}：
+ *     封面、二维码、生成结果、文本排版缓存的命中、淘汰和内存占用，以及模板预合成底图的内存占用；</li>
+ *     <li>poster.startup.first_poster、poster.startup.warmup：第一张海报（含预热海报）完成时的 JVM 运行时间，
+ *     以及 {@link PosterEngine#warmUp()} 的耗时，未发生时为 NaN。</li>
+ * </ul>
+ */
+public final class PosterMetrics {
+
+    /**
+     * 渲染阶段
+     */
+    public enum Stage {
+        /**
+         * 下载封面图
+         */
+        FETCH,
+        /**
+         * 解码封面图（含抽样与缩放）
+         */
+        DECODE,
+        /**
+         * 模板排版
+         */
+        LAYOUT,
+        /**
+         * 绘制到画布
+         */
+        DRAW,
+        /**
+         * 图片编码
+         */
+        ENCODE,
+        /**
+         * 写入输出文件
+         */
+        WRITE;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 渲染过程，异常原样抛出
+     */
+    @FunctionalInterface
+    public interface RenderCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    public static final String CAUSE_IMAGE_TOO_LARGE = "image_too_large";
+    public static final String CAUSE_IO = "io";
+    public static final String CAUSE_INVALID_ARGUMENT = "invalid_argument";
+    public static final String CAUSE_QRCODE = "qrcode";
+    public static final String CAUSE_REJECTED = "rejected";
+    public static final String CAUSE_OTHER = "other";
+
+    private static volatile PosterMetrics defaultInstance = new PosterMetrics(Metrics.globalRegistry);
+
+    /**
+     * 当前线程正在进行的渲染所分配的画布字节数，不在 {@link #record(RenderCall)} 内时为空
+     */
+    private static final ThreadLocal<long[]> CANVAS_BYTES = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicLong canvasBytes = new AtomicLong();
+    private final AtomicLong firstPosterUptime = new AtomicLong(-1);
+    private final AtomicLong warmUpNanos = new AtomicLong(-1);
+
+    public PosterMetrics(MeterRegistry registry) {
+        this.registry = Objects.requireNonNull(registry);
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("poster.render.stage")
+                    .description("海报渲染各阶段耗时")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        this.successTimer = renderTimer("success");
+        this.failureTimer = renderTimer("failure");
+        Gauge.builder("poster.render.inflight", inflight, AtomicInteger::get)
+                .description("正在渲染的海报数")
+                .register(registry);
+        Gauge.builder("poster.render.canvas.bytes", canvasBytes, AtomicLong::get)
+                .description("正在渲染的海报画布占用的像素内存")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("poster.admission.bytes", this, m -> PixelBudget.getDefault().getUsedBytes())
+                .description("解码占用的像素内存额度")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("poster.admission.queued", this, m -> PixelBudget.getDefault().getQueueLength())
+                .description("排队等待像素内存额度的线程数")
+                .register(registry);
+        TimeGauge.builder("poster.startup.first_poster", firstPosterUptime, TimeUnit.MILLISECONDS, PosterMetrics::orNaN)
+                .description("第一张海报完成时的 JVM 运行时间")
+                .register(registry);
+        TimeGauge.builder("poster.startup.warmup", warmUpNanos, TimeUnit.NANOSECONDS, PosterMetrics::orNaN)
+                .description("启动预热耗时")
+                .register(registry);
+        bindCaches();
+    }
+
+    /**
+     * 全局共享的指标，PosterUtil、CoverDecoder、ImageEncoder 等默认记录到该实例
+     */
+    public static PosterMetrics getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 替换全局共享的指标，例如改为记录到指定的注册表
+     */
+    public static void setDefault(PosterMetrics metrics) {
+        defaultInstance = Objects.requireNonNull(metrics);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     *
+     * @param startNanos 阶段开始时的 {@link System#nanoTime()}
+     */
+    public void recordStage(Stage stage, long startNanos) {
+        stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一张海报的完整渲染：在途数、总耗时、失败原因，以及期间分配的画布内存
+     */
+    public <T, E extends Exception> T record(RenderCall<T, E> call) throws E {
+        long[] previous = CANVAS_BYTES.get();
+        long[] allocated = new long[1];
+        CANVAS_BYTES.set(allocated);
+        inflight.incrementAndGet();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            recordFirstPoster();
+            return result;
+        } catch (Exception | Error e) {
+            recordFailure(e);
+            throw e;
+        } finally {
+            (success ? successTimer : failureTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inflight.decrementAndGet();
+            canvasBytes.addAndGet(-allocated[0]);
+            if (previous != null) {
+                CANVAS_BYTES.set(previous);
+            } else {
+                CANVAS_BYTES.remove();
+            }
+        }
+    }
+
+    /**
+     * 记录画布分配，计入当前线程正在进行的渲染，渲染结束时释放
+     */
+    public void recordCanvas(BufferedImage canvas) {
+        long[] allocated = CANVAS_BYTES.get();
+        if (allocated != null) {
+            long bytes = bytesOf(canvas);
+            allocated[0] += bytes;
+            canvasBytes.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * 记录启动预热的耗时，预热海报也计为第一张海报
+     */
+    public void recordWarmUp(long nanos) {
+        warmUpNanos.set(nanos);
+        recordFirstPoster();
+    }
+
+    /**
+     * 按原因记录一次失败，用于不经过 {@link #record(RenderCall)} 的调用方（例如以返回值表示失败的接口）
+     */
+    public void recordFailure(Throwable error) {
+        Counter.builder("poster.render.failures")
+                .description("海报渲染失败次数")
+                .tag("cause", causeOf(error))
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 失败原因分类，CompletionException 等包装异常按其原因分类
+     */
+    public static String causeOf(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException
+                || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof CoverDecoder.ImageTooLargeException) {
+            return CAUSE_IMAGE_TOO_LARGE;
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return CAUSE_REJECTED;
+        }
+        if (cause instanceof WriterException) {
+            return CAUSE_QRCODE;
+        }
+        if (cause instanceof IOException) {
+            return CAUSE_IO;
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return CAUSE_INVALID_ARGUMENT;
+        }
+        return CAUSE_OTHER;
+    }
+
+    /**
+     * 图片像素缓冲区占用的字节数
+     */
+    static long bytesOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    private void recordFirstPoster() {
+        if (firstPosterUptime.get() < 0) {
+            firstPosterUptime.compareAndSet(-1, ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+    }
+
+    private static double orNaN(AtomicLong value) {
+        long v = value.get();
+        return v < 0 ? Double.NaN : v;
+    }
+
+    private Timer renderTimer(String result) {
+        return Timer.builder("poster.render")
+                .description("整张海报渲染耗时")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * 缓存指标在采集时读取当前的全局实例，替换全局缓存后继续有效
+     */
+    private void bindCaches() {
+        cacheCounter("poster.cache.requests", "cover", "heap_hit", m -> RemoteImageCache.getDefault().stats().getHeapHits());
+        cacheCounter("poster.cache.requests", "cover", "disk_hit", m -> RemoteImageCache.getDefault().stats().getDiskHits());
+        cacheCounter("poster.cache.requests", "cover", "revalidated", m -> RemoteImageCache.getDefault().stats().getRevalidations());
+        cacheCounter("poster.cache.requests", "cover", "miss", m -> RemoteImageCache.getDefault().stats().getMisses());
+        cacheCounter("poster.cache.evictions", "cover", null, m -> RemoteImageCache.getDefault().stats().getHeapEvictions());
+        cacheCounter("poster.cache.requests", "qrcode", "hit", m -> QrCodeCache.getDefault().getHitCount());
+        cacheCounter("poster.cache.requests", "qrcode", "miss", m -> QrCodeCache.getDefault().getMissCount());
+        cacheCounter("poster.cache.evictions", "qrcode", null, m -> QrCodeCache.getDefault().getEvictionCount());
+        cacheCounter("poster.cache.requests", "result", "heap_hit", m -> PosterResultCache.getDefault().getHitCount());
+        cacheCounter("poster.cache.requests", "result", "disk_hit", m -> PosterResultCache.getDefault().getDiskHitCount());
+        cacheCounter("poster.cache.requests", "result", "miss", m -> PosterResultCache.getDefault().getMissCount());
+        cacheCounter("poster.cache.requests", "canvas", "hit", m -> CanvasPool.getDefault().getHitCount());
+        cacheCounter("poster.cache.requests", "canvas", "miss", m -> CanvasPool.getDefault().getMissCount());
+        cacheCounter("poster.cache.requests", "text", "hit", m -> TextRunCache.getDefault().getHitCount());
+        cacheCounter("poster.cache.requests", "text", "miss", m -> TextRunCache.getDefault().getMissCount());
+        cacheCounter("poster.cache.requests", "text_sprite", "hit", m -> TextRunCache.getDefault().getSpriteHitCount());
+        cacheCounter("poster.cache.requests", "text_sprite", "miss", m -> TextRunCache.getDefault().getSpriteMissCount());
+        cacheCounter("poster.cache.evictions", "result", null, m -> PosterResultCache.getDefault().getEvictionCount());
+
+        cacheGauge("cover", m -> RemoteImageCache.getDefault().stats().getHeapPixels() * Integer.BYTES);
+        cacheGauge("cover_disk", m -> RemoteImageCache.getDefault().stats().getDiskBytes());
+        cacheGauge("qrcode", m -> QrCodeCache.getDefault().getBytes());
+        cacheGauge("result", m -> PosterResultCache.getDefault().getBytes());
+        cacheGauge("result_disk", m -> PosterResultCache.getDefault().getDiskBytes());
+        cacheGauge("canvas", m -> CanvasPool.getDefault().getPooledBytes());
+        cacheGauge("text_sprite", m -> TextRunCache.getDefault().getSpriteBytes());
+        cacheGauge("template_base", m -> PosterTemplate.getDefault().getBaseBytes());
+    }
+
+    private void cacheCounter(String name, String cache, String result, ToDoubleFunction<PosterMetrics> count) {
+        FunctionCounter.Builder<PosterMetrics> builder = FunctionCounter.builder(name, this, count).tag("cache", cache);
+        if (result != null) {
+            builder.tag("result", result);
+        }
+        builder.register(registry);
+    }
+
+    private void cacheGauge(String cache, ToDoubleFunction<PosterMetrics> bytes) {
+        Gauge.builder("poster.cache.bytes", this, bytes)
+                .description("缓存占用的内存（*_disk 为磁盘）")
+                .tag("cache", cache)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
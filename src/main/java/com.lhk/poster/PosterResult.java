@@ -0,0 +1,23 @@
+package com.lhk.poster;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 批量生成中单张海报的结果，成功时携带 JPEG 字节，失败时携带异常
+ */
+@Data
+@AllArgsConstructor
+public class PosterResult {
+    /**
+     * 在输入序列中的序号（从0开始）
+     */
+    private long index;
+    private PosterSpec spec;
+    private byte[] bytes;
+    private Throwable error;
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
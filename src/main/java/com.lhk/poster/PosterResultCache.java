@@ -0,0 +1,309 @@
+package com.lhk.poster;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 海报生成结果缓存
+ * <p>
+ * 以 {@link PosterCacheKey} 为键保存编码后的海报字节：堆内一层按字节预算 LRU 淘汰，可选的 {@link DiskCache}
+ * 作为第二层，重启后仍可命中。分享链接传播时同一组封面、文案、二维码会被反复请求，命中后完全跳过下载、
+ * 解码、绘制和编码；同一个键的并发请求只渲染一次。
+ * <p>
+ * ETag 是编码结果的 SHA-256，过期后重新渲染出不同的字节（例如网络封面已更新）时随之变化；客户端带 If-None-Match
+ * 重复请求且与缓存中未过期条目的 ETag 一致时，直接返回 304，不再渲染和传输图片。
+ */
+public class PosterResultCache {
+
+    /**
+     * 默认堆内字节预算
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    /**
+     * 默认有效期，网络封面内容的更新在此之后生效
+     */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static volatile PosterResultCache defaultInstance = new PosterResultCache(DEFAULT_MAX_BYTES, DEFAULT_TTL_MILLIS, null);
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final DiskCache diskCache;
+    private final LinkedHashMap<String, Entry> heap = new LinkedHashMap<>(64, 0.75f, true);
+    private long heapBytes;
+    private final ConcurrentMap<String, CompletableFuture<Entry>> rendering = new ConcurrentHashMap<>();
+
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxBytes 堆内字节预算
+     * @param ttlMillis 条目有效期
+     * @param diskCache 磁盘层，为空时只使用堆内缓存
+     */
+    public PosterResultCache(long maxBytes, long ttlMillis, DiskCache diskCache) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("结果缓存容量必须大于0");
+        }
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * 全局共享的缓存（仅堆内层），PosterUtil 生成文件时使用该实例
+     */
+    public static PosterResultCache getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 替换全局共享的缓存，例如启用磁盘层或调整预算
+     */
+    public static void setDefault(PosterResultCache cache) {
+        defaultInstance = Objects.requireNonNull(cache);
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * 编码结果的 ETag（强校验）
+     */
+    public static String etag(byte[] bytes) {
+        return '"' + DigestUtil.sha256Hex(bytes) + '"';
+    }
+
+    /**
+     * If-None-Match 请求头是否包含该 ETag，支持逗号分隔的多个值、弱校验前缀 W/ 和 *
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找未过期的条目，堆内未命中时查找磁盘层并回填堆内
+     *
+     * @return 条目，不存在或已过期时返回 null
+     */
+    public Entry get(String key) {
+        synchronized (heap) {
+            Entry entry = heap.get(key);
+            if (entry != null) {
+                if (entry.isFresh(ttlMillis)) {
+                    heapHits.incrementAndGet();
+                    return entry;
+                }
+                heap.remove(key);
+                heapBytes -= entry.bytes.length;
+            }
+        }
+        if (diskCache != null) {
+            DiskCache.Entry disk = diskCache.get(key);
+            if (disk != null && System.currentTimeMillis() - disk.getStoredAt() < ttlMillis) {
+                diskHits.incrementAndGet();
+                String etag = StringUtils.isEmpty(disk.getEtag()) ? etag(disk.getBytes()) : disk.getEtag();
+                return store(key, new Entry(disk.getBytes(), etag, disk.getStoredAt()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 缓存中是否有未过期的条目；计入命中统计
+     */
+    public boolean contains(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 保存编码结果
+     */
+    public Entry put(String key, byte[] bytes) {
+        Entry entry = new Entry(bytes, etag(bytes), System.currentTimeMillis());
+        if (diskCache != null) {
+            diskCache.put(key, bytes, entry.etag, null);
+        }
+        return store(key, entry);
+    }
+
+    /**
+     * 获取条目，未命中时调用 renderer 渲染并缓存；同一个键同时只有一次渲染，其余请求等待同一个结果。
+     * 每个调用方拿到各自的 future，完成或取消它不影响其他调用方，也不会中止共享的渲染
+     *
+     * @param renderer 返回编码后字节的异步渲染
+     */
+    public CompletableFuture<Entry> getOrRender(String key, Supplier<CompletableFuture<byte[]>> renderer) {
+        Entry cached = get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Entry> created = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = rendering.putIfAbsent(key, created);
+        if (existing != null) {
+            return viewOf(existing);
+        }
+        misses.incrementAndGet();
+        try {
+            renderer.get().whenComplete((bytes, error) -> {
+                rendering.remove(key, created);
+                if (error != null) {
+                    created.completeExceptionally(error);
+                } else {
+                    created.complete(put(key, bytes));
+                }
+            });
+        } catch (RuntimeException e) {
+            rendering.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return viewOf(created);
+    }
+
+    /**
+     * 共享渲染结果的独立视图，原样传递结果或异常
+     */
+    private static CompletableFuture<Entry> viewOf(CompletableFuture<Entry> shared) {
+        CompletableFuture<Entry> view = new CompletableFuture<>();
+        shared.whenComplete((entry, error) -> {
+            if (error != null) {
+                view.completeExceptionally(error);
+            } else {
+                view.complete(entry);
+            }
+        });
+        return view;
+    }
+
+    public void invalidate(String key) {
+        synchronized (heap) {
+            Entry entry = heap.remove(key);
+            if (entry != null) {
+                heapBytes -= entry.bytes.length;
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (heap) {
+            heap.clear();
+            heapBytes = 0;
+        }
+    }
+
+    public long getHitCount() {
+        return heapHits.get();
+    }
+
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public int getEntryCount() {
+        synchronized (heap) {
+            return heap.size();
+        }
+    }
+
+    /**
+     * 堆内条目占用的字节数
+     */
+    public long getBytes() {
+        synchronized (heap) {
+            return heapBytes;
+        }
+    }
+
+    /**
+     * 磁盘层占用的字节数，未启用磁盘层时为0
+     */
+    public long getDiskBytes() {
+        return diskCache != null ? diskCache.getTotalBytes() : 0L;
+    }
+
+    private Entry store(String key, Entry entry) {
+        if (entry.bytes.length > maxBytes) {
+            // 单张超出预算，不缓存
+            return entry;
+        }
+        synchronized (heap) {
+            Entry previous = heap.put(key, entry);
+            heapBytes += entry.bytes.length - (previous != null ? previous.bytes.length : 0L);
+            Iterator<Entry> it = heap.values().iterator();
+            while (heapBytes > maxBytes && it.hasNext()) {
+                Entry eldest = it.next();
+                heapBytes -= eldest.bytes.length;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存条目，字节数组被所有调用方共享，只能读取
+     */
+    public static final class Entry {
+        private final byte[] bytes;
+        private final String etag;
+        private final long storedAt;
+
+        Entry(byte[] bytes, String etag, long storedAt) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.storedAt = storedAt;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * 编码完成（写入缓存）的时间
+         */
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        boolean isFresh(long ttlMillis) {
+            return System.currentTimeMillis() - storedAt < ttlMillis;
+        }
+    }
+}
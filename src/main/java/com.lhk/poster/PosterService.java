@@ -0,0 +1,274 @@
+package com.lhk.poster;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单张海报生成服务，供 Web 接口等在线场景使用
+ * <p>
+ * 与 {@link PosterBatchRenderer} 使用同一条流水线：网络封面在 {@link ImageFetcher} 的 I/O 线程上下载，
+ * 解码、绘制、编码在有界的渲染线程池上执行，调用线程（例如 WebFlux 的事件循环）不会被阻塞。
+ * 同时在途的海报数超过 maxInFlight 时直接以 {@link RejectedExecutionException} 拒绝，
+ * 而不是在队列里无限堆积。
+ * <p>
+ * 配置了 {@link PosterResultCache} 时，{@link #renderCachedAsync(PosterSpec)} 对相同参数的重复请求直接返回缓存的编码结果。
+ */
+public class PosterService implements AutoCloseable {
+
+    private final PosterBatchRenderer pipeline;
+    private final ImageEncoder encoder;
+    private final Executor renderExecutor;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final ExecutorService ownedExecutor;
+    private final PosterResultCache resultCache;
+
+    /**
+     * 创建自带渲染线程池的服务，close() 时关闭线程池
+     *
+     * @param encoder 输出编码器
+     * @param renderThreads 渲染线程数
+     * @param maxInFlight 最大在途海报数（含等待封面下载的）
+     */
+    public PosterService(RemoteImageCache imageCache, ImageEncoder encoder, int renderThreads, int maxInFlight) {
+        this(imageCache, encoder, newRenderExecutor(renderThreads), maxInFlight, true, null);
+    }
+
+    /**
+     * 创建自带渲染线程池并使用结果缓存的服务
+     *
+     * @param resultCache 生成结果缓存，为空时不缓存
+     */
+    public PosterService(RemoteImageCache imageCache, ImageEncoder encoder, int renderThreads, int maxInFlight,
+                         PosterResultCache resultCache) {
+        this(imageCache, encoder, newRenderExecutor(renderThreads), maxInFlight, true, resultCache);
+    }
+
+    /**
+     * 使用调用方提供的渲染线程池，close() 时不会关闭它
+     */
+    public PosterService(RemoteImageCache imageCache, ImageEncoder encoder, Executor renderExecutor, int maxInFlight) {
+        this(imageCache, encoder, renderExecutor, maxInFlight, false, null);
+    }
+
+    private PosterService(RemoteImageCache imageCache, ImageEncoder encoder, Executor renderExecutor, int maxInFlight,
+                          boolean ownsExecutor, PosterResultCache resultCache) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("最大在途数必须大于0");
+        }
+        this.encoder = Objects.requireNonNull(encoder);
+        this.renderExecutor = Objects.requireNonNull(renderExecutor);
+        this.pipeline = new PosterBatchRenderer(Objects.requireNonNull(imageCache), renderExecutor, renderExecutor, maxInFlight);
+        this.permits = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) renderExecutor : null;
+        this.resultCache = resultCache;
+    }
+
+    public ImageEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * 生成结果缓存，未启用时为空
+     */
+    public PosterResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * 海报参数在默认模板和本服务编码器下的结果缓存键
+     *
+     * @throws IOException 模板素材或本地封面无法读取
+     */
+    public String cacheKey(PosterSpec spec) throws IOException {
+        return PosterCacheKey.of(PosterTemplate.getDefault()).encoder(encoder).spec(spec).build();
+    }
+
+    /**
+     * 异步获取编码后的海报，相同参数在缓存有效期内只渲染一次；未启用结果缓存时每次都渲染
+     */
+    public CompletableFuture<PosterResultCache.Entry> renderCachedAsync(PosterSpec spec) {
+        String key;
+        try {
+            key = cacheKey(spec);
+        } catch (IOException e) {
+            CompletableFuture<PosterResultCache.Entry> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        if (resultCache == null) {
+            return submit(spec, encoder::encode).thenApply(bytes -> new PosterResultCache.Entry(bytes,
+                    PosterResultCache.etag(bytes), System.currentTimeMillis()));
+        }
+        return resultCache.getOrRender(key, () -> submit(spec, encoder::encode));
+    }
+
+    /**
+     * 批量生成器，与本服务共享封面缓存和渲染线程池
+     */
+    public PosterBatchRenderer getBatchRenderer() {
+        return pipeline;
+    }
+
+    /**
+     * 当前在途的海报数
+     */
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * 异步生成海报并按配置的编码器写入输出流（不关闭输出流），编码在渲染线程上执行
+     *
+     * @return 写入完成时完成；失败时以 {@link CompletionException} 包装原因，
+     * 在途数已满时以 {@link RejectedExecutionException} 失败
+     */
+    public CompletableFuture<Void> renderAsync(PosterSpec spec, OutputStream outputStream) {
+        return submit(spec, posterImage -> {
+            encoder.encode(posterImage, outputStream);
+            return null;
+        });
+    }
+
+    /**
+     * 异步生成海报，返回未编码的图片
+     */
+    public CompletableFuture<BufferedImage> renderAsync(PosterSpec spec) {
+        return submit(spec, posterImage -> posterImage);
+    }
+
+    /**
+     * 同步生成海报并写入输出流（不关闭输出流）
+     *
+     * @throws IOException 封面获取、绘制或编码失败
+     * @throws RejectedExecutionException 在途数已满
+     */
+    public void render(PosterSpec spec, OutputStream outputStream) throws IOException {
+        join(renderAsync(spec, outputStream));
+    }
+
+    /**
+     * 同步生成海报并返回编码后的字节
+     */
+    public byte[] renderToBytes(PosterSpec spec) throws IOException {
+        return join(submit(spec, encoder::encode));
+    }
+
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(PosterSpec spec, Output<T> output) {
+        if (!permits.tryAcquire()) {
+            PosterMetrics.getDefault().recordFailure(new RejectedExecutionException());
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new RejectedExecutionException("在途海报数已达上限: " + maxInFlight));
+            return rejected;
+        }
+        CompletableFuture<T> result;
+        try {
+            result = pipeline.loadCover(spec)
+                    .whenComplete((cover, error) -> {
+                        if (error != null) {
+                            PosterMetrics.getDefault().recordFailure(error);
+                        }
+                    })
+                    .thenApplyAsync(cover -> {
+                        try {
+                            return PosterMetrics.getDefault().record(() -> {
+                                // 封面、画布和编码的中间结果计入像素内存预算，输出完成后归还
+                                PixelBudget.Permit permit = PosterBatchRenderer.acquireRender(cover);
+                                try {
+                                    return write(PosterBatchRenderer.render(spec, cover), output);
+                                } finally {
+                                    permit.close();
+                                }
+                            });
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }, renderExecutor);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        result.whenComplete((value, error) -> permits.release());
+        return result;
+    }
+
+    /**
+     * 输出不是画布本身时（已编码），把画布归还 {@link CanvasPool}
+     */
+    private static <T> T write(BufferedImage posterImage, Output<T> output) throws IOException {
+        T value = null;
+        try {
+            value = output.write(posterImage);
+            return value;
+        } finally {
+            if (value != posterImage) {
+                CanvasPool.getDefault().release(posterImage);
+            }
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待海报生成时线程被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("海报生成失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static ExecutorService newRenderExecutor(int renderThreads) {
+        if (renderThreads <= 0) {
+            throw new IllegalArgumentException("渲染线程数必须大于0");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "poster-render-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(renderThreads, threadFactory);
+    }
+
+    /**
+     * 绘制完成后在渲染线程上对海报图片的处理
+     */
+    @FunctionalInterface
+    private interface Output<T> {
+        T write(BufferedImage posterImage) throws IOException;
+    }
+}
@@ -0,0 +1,42 @@
+package com.lhk.poster;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单张海报的生成参数，用于批量生成
+ * <p>
+ * 封面图 coverUrl 与 coverPath 二选一；qrPayload 为空时使用默认二维码。
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PosterSpec {
+    /**
+     * 调用方自定义的标识，原样带回结果中
+     */
+    private String id;
+    /**
+     * 网络封面图URL
+     */
+    private String coverUrl;
+    /**
+     * 本地封面图路径
+     */
+    private String coverPath;
+    /**
+     * 中文内容
+     */
+    private String zh;
+    /**
+     * 英文内容
+     */
+    private String en;
+    /**
+     * 二维码内容（例如用户专属链接）
+     */
+    private String qrPayload;
+}
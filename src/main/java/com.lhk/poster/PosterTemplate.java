@@ -0,0 +1,326 @@
+package com.lhk.poster;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONUtil;
+import org.apache.commons.io.IOUtils;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 声明式海报模板
+ * <p>
+ * 模板用 JSON 或 YAML 描述背景和按绘制顺序排列的图层，例如：
+ * <pre>
+ * {
+ *   "name": "default",
+ *   "background": "default_bgimg.jpg",
+ *   "layers": [
+ *     {"type": "image", "slot": "cover", "anchor": "flow", "x": 25, "y": 25, "right": 25},
+ *     {"type": "text", "slot": "zh", "anchor": "flow", "x": 25, "y": 30, "font": {"size": 28}, "color": "#474747"},
+ *     {"type": "image", "slot": "qrcode", "default": "default_qrcodeimg.jpg", "anchor": "bottom-right", "x": 25, "y": 25},
+ *     {"type": "text", "text": "SuchJack", "anchor": "bottom-left", "x": 25, "y": "25+2lh", "font": {"size": 22}}
+ *   ]
+ * }
+ * </pre>
+ * 图层有 image 和 text 两种，slot 声明的内容在渲染时由 {@link PosterData} 提供，src / text 声明的是固定内容。
+ * 模板只解析一次，针对每种画布尺寸编译一次 {@link RenderPlan} 并缓存，渲染时不再做解析和布局决策。
+ * 渲染计划和底图按字体版本缓存，{@link FontRegistry} 加载字体或切换严格模式后重新编译，新字体对之后的海报生效。
+ * 类路径 templates/ 下的模板可以按名称通过 {@link #forName(String)} 获取。
+ * <p>
+ * 背景和固定图层（固定素材、固定文本、未绑定数据的缺省插槽图片）在首次渲染时预合成为底图并缓存，
+ * 之后每张海报从底图的栅格副本开始，只绘制封面、文案等动态图层。
+ */
+public final class PosterTemplate {
+
+    /**
+     * 默认模板名称，与原 PosterUtil 的布局一致
+     */
+    public static final String DEFAULT = "default";
+
+    private static final String TEMPLATE_DIRECTORY = "templates/";
+    private static final String[] TEMPLATE_EXTENSIONS = {".json", ".yaml", ".yml"};
+
+    private static final ConcurrentMap<String, PosterTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final String background;
+    private final int width;
+    private final int height;
+    private final Color backgroundColor;
+    private final List<TemplateLayer> layers;
+    private volatile Compiled compiled = new Compiled(FontRegistry.getGeneration());
+    /**
+     * 模板文本的 SHA-256
+     */
+    private final String sourceHash;
+    private volatile String fingerprint;
+
+    private PosterTemplate(Map<String, Object> map, String sourceHash) {
+        this.sourceHash = sourceHash;
+        this.name = TemplateLayer.stringValue(map.get("name"));
+        this.background = TemplateLayer.stringValue(map.get("background"));
+        Integer declaredWidth = TemplateLayer.intValue(map.get("width"));
+        Integer declaredHeight = TemplateLayer.intValue(map.get("height"));
+        if (background != null) {
+            try {
+                BufferedImage backgroundImage = AssetCache.get(background);
+                this.width = declaredWidth != null ? declaredWidth : backgroundImage.getWidth();
+                this.height = declaredHeight != null ? declaredHeight : backgroundImage.getHeight();
+            } catch (IOException e) {
+                throw new UncheckedIOException("模板背景加载失败: " + background, e);
+            }
+        } else if (declaredWidth != null && declaredHeight != null) {
+            this.width = declaredWidth;
+            this.height = declaredHeight;
+        } else {
+            throw new IllegalArgumentException("模板需要 background 或 width / height");
+        }
+        String color = TemplateLayer.stringValue(map.get("backgroundColor"));
+        this.backgroundColor = color == null ? Color.WHITE : Color.decode(color);
+
+        Object layerList = map.get("layers");
+        if (!(layerList instanceof List)) {
+            throw new IllegalArgumentException("模板缺少 layers");
+        }
+        List<TemplateLayer> parsed = new ArrayList<>();
+        for (Object layer : (List<?>) layerList) {
+            parsed.add(TemplateLayer.parse(layer));
+        }
+        this.layers = Collections.unmodifiableList(parsed);
+    }
+
+    /**
+     * 解析模板文本，以 "{" 开头的按 JSON 解析，否则按 YAML 解析
+     *
+     * @throws IllegalArgumentException 模板格式错误
+     */
+    @SuppressWarnings("unchecked")
+    public static PosterTemplate parse(String text) {
+        String trimmed = text.trim();
+        // YAML 只构造 Map、List 和标量，不识别 !! 类型标签，避免模板文本构造任意对象
+        Object root = trimmed.startsWith("{") ? JSONUtil.parseObj(trimmed) : new Yaml(new SafeConstructor()).load(trimmed);
+        if (!(root instanceof Map)) {
+            throw new IllegalArgumentException("模板必须是对象");
+        }
+        return new PosterTemplate((Map<String, Object>) root, DigestUtil.sha256Hex(trimmed));
+    }
+
+    /**
+     * 从类路径资源加载模板
+     */
+    public static PosterTemplate load(String resource) throws IOException {
+        try (InputStream inputStream = PosterTemplate.class.getClassLoader().getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("模板不存在: " + resource);
+            }
+            return parse(IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 按名称获取类路径 templates/ 下的模板（依次查找 .json / .yaml / .yml），结果缓存
+     */
+    public static PosterTemplate forName(String name) throws IOException {
+        PosterTemplate template = TEMPLATES.get(name);
+        if (template != null) {
+            return template;
+        }
+        for (String extension : TEMPLATE_EXTENSIONS) {
+            String resource = TEMPLATE_DIRECTORY + name + extension;
+            if (PosterTemplate.class.getClassLoader().getResource(resource) != null) {
+                template = load(resource);
+                PosterTemplate existing = TEMPLATES.putIfAbsent(name, template);
+                return existing != null ? existing : template;
+            }
+        }
+        throw new IOException("模板不存在: " + name);
+    }
+
+    /**
+     * 默认模板
+     */
+    public static PosterTemplate getDefault() {
+        try {
+            return forName(DEFAULT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 背景素材，可能为空（纯色背景）
+     */
+    public String getBackground() {
+        return background;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 模板指纹：模板文本与其引用的全部素材（背景、图层素材）的版本摘要，
+     * 模板或任一素材变化后随之变化，用于生成结果缓存的键
+     */
+    public String getFingerprint() throws IOException {
+        String value = fingerprint;
+        if (value == null) {
+            StringBuilder builder = new StringBuilder(sourceHash);
+            if (background != null) {
+                builder.append(';').append(AssetCache.version(background));
+            }
+            for (TemplateLayer layer : layers) {
+                if (layer.asset != null) {
+                    builder.append(';').append(AssetCache.version(layer.asset));
+                }
+            }
+            value = DigestUtil.sha256Hex(builder.toString());
+            fingerprint = value;
+        }
+        return value;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 模板默认尺寸的渲染计划
+     */
+    public RenderPlan plan() {
+        return plan(width, height);
+    }
+
+    /**
+     * 指定画布尺寸（例如自定义背景）的渲染计划，每种尺寸只编译一次
+     */
+    public RenderPlan plan(int canvasWidth, int canvasHeight) {
+        return compiled().plan(canvasWidth, canvasHeight);
+    }
+
+    /**
+     * 创建模板背景的可写画布
+     */
+    public BufferedImage createCanvas() throws IOException {
+        if (background != null) {
+            BufferedImage backgroundImage = AssetCache.get(background);
+            if (backgroundImage.getWidth() == width && backgroundImage.getHeight() == height) {
+                return AssetCache.copyOf(backgroundImage);
+            }
+        }
+        BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics2d = canvas.createGraphics();
+        try {
+            graphics2d.setColor(backgroundColor);
+            graphics2d.fillRect(0, 0, width, height);
+            if (background != null) {
+                graphics2d.drawImage(AssetCache.get(background), 0, 0, width, height, null);
+            }
+        } finally {
+            graphics2d.dispose();
+        }
+        return canvas;
+    }
+
+    /**
+     * 在模板背景上渲染海报：复制预合成底图，再绘制动态图层。画布取自 {@link CanvasPool}，
+     * 调用方用完后可以归还
+     */
+    public BufferedImage render(PosterData data) throws IOException {
+        Compiled current = compiled();
+        PosterLayout layout = current.plan(width, height).layout(data);
+        long start = System.nanoTime();
+        BufferedImage canvas = CanvasPool.getDefault().copyOf(getBase(current, layout));
+        PosterMetrics.getDefault().recordCanvas(canvas);
+        try {
+            layout.drawDynamic(canvas);
+        } finally {
+            PosterMetrics.getDefault().recordStage(PosterMetrics.Stage.DRAW, start);
+        }
+        return canvas;
+    }
+
+    /**
+     * 已缓存的底图数量
+     */
+    public int getBaseCount() {
+        return compiled.bases.size();
+    }
+
+    /**
+     * 已缓存的底图占用的像素内存（字节）
+     */
+    public long getBaseBytes() {
+        long bytes = 0;
+        for (BufferedImage base : compiled.bases.values()) {
+            bytes += PosterMetrics.bytesOf(base);
+        }
+        return bytes;
+    }
+
+    /**
+     * 获取排版结果对应的底图（只读共享），不存在时用本次排版的静态操作合成
+     */
+    private BufferedImage getBase(Compiled current, PosterLayout layout) throws IOException {
+        BufferedImage base = current.bases.get(layout.getStaticKey());
+        if (base != null) {
+            return base;
+        }
+        base = createCanvas();
+        layout.drawStatic(base);
+        BufferedImage existing = current.bases.putIfAbsent(layout.getStaticKey(), base);
+        return existing != null ? existing : base;
+    }
+
+    /**
+     * 当前字体版本的编译结果，字体变化后整体替换；替换前已开始的渲染仍写入旧实例，不会污染新缓存
+     */
+    private Compiled compiled() {
+        Compiled current = compiled;
+        int generation = FontRegistry.getGeneration();
+        if (current.fontGeneration != generation) {
+            current = new Compiled(generation);
+            compiled = current;
+        }
+        return current;
+    }
+
+    /**
+     * 按同一版本字体编译的渲染计划和预合成底图
+     */
+    private final class Compiled {
+        final int fontGeneration;
+        final ConcurrentMap<Long, RenderPlan> plans = new ConcurrentHashMap<>();
+        /**
+         * 预合成底图：背景 + 静态图层，按参与合成的图层集合缓存
+         */
+        final ConcurrentMap<Long, BufferedImage> bases = new ConcurrentHashMap<>();
+
+        Compiled(int fontGeneration) {
+            this.fontGeneration = fontGeneration;
+        }
+
+        RenderPlan plan(int canvasWidth, int canvasHeight) {
+            long key = ((long) canvasWidth << 32) | (canvasHeight & 0xFFFFFFFFL);
+            return plans.computeIfAbsent(key, k -> new RenderPlan(name, canvasWidth, canvasHeight, layers));
+        }
+    }
+}
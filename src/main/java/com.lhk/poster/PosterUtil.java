@@ -3,17 +3,16 @@ package com.lhk.poster;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import sun.font.FontDesignMetrics;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.List;
 
 public class PosterUtil {
 
@@ -23,11 +22,19 @@ public class PosterUtil {
      * 留白
      */
     private static final int MARGIN = 25;
+
     /**
-     * 使用的字体
+     * 默认模板的插槽
      */
-    private static final String USE_FONT_NAME = "微软雅黑";
+    static final String SLOT_COVER = "cover";
+    static final String SLOT_ZH = "zh";
+    static final String SLOT_EN = "en";
+    static final String SLOT_QRCODE = "qrcode";
 
+    /**
+     * @deprecated 布局已移至模板，使用 {@link #render(BufferedImage, BufferedImage, String, String, BufferedImage)}
+     */
+    @Deprecated
     public static void drawQrcode(Graphics2DPoster graphics2dPoster) {
         BufferedImage qrcodeImage = graphics2dPoster.getQrcodeImage();
         BufferedImage bgImage = graphics2dPoster.getBgImage();
@@ -41,14 +48,19 @@ public class PosterUtil {
 
         // 追加二维码描述文本
         graphics2d.setColor(new Color(71, 71, 71));
-        Font font = new Font(USE_FONT_NAME, Font.PLAIN, 22);
+        Font font = FontRegistry.getFont(Font.PLAIN, 22);
         graphics2d.setFont(font);
-        FontDesignMetrics metrics = FontDesignMetrics.getMetrics(graphics2d.getFont());
+        FontMetricsTable metrics = FontRegistry.getMetrics(font);
 
-        graphics2d.drawString("SuchJack", MARGIN, bgImage.getHeight() - MARGIN - metrics.getHeight() * 2);
-        graphics2d.drawString("一个幽默的程序员", MARGIN, bgImage.getHeight() - MARGIN - metrics.getDescent());
+        TextRunCache cache = TextRunCache.getDefault();
+        cache.drawString(graphics2d, "SuchJack", MARGIN, bgImage.getHeight() - MARGIN - metrics.getHeight() * 2);
+        cache.drawString(graphics2d, "一个幽默的程序员", MARGIN, bgImage.getHeight() - MARGIN - metrics.getDescent());
     }
 
+    /**
+     * @deprecated 布局已移至模板，使用 {@link #render(BufferedImage, BufferedImage, String, String, BufferedImage)}
+     */
+    @Deprecated
     public static void drawEnString(Graphics2DPoster graphics2dPoster) throws IOException {
         // 设置封面图和下方中文之间的距离
         graphics2dPoster.addCurrentY(20);
@@ -56,52 +68,59 @@ public class PosterUtil {
         Graphics2D graphics2d = graphics2dPoster.getGraphics2d();
         graphics2d.setColor(new Color(157, 157, 157));
 
-        FontDesignMetrics metrics = FontDesignMetrics.getMetrics(graphics2d.getFont());
-        String enWrap = FontUtil.makeEnLineFeed(graphics2dPoster.getEn(), metrics, graphics2dPoster.getSuitableWidth());
-        String[] enWraps = enWrap.split("\n");
-        for (int i = 0; i < enWraps.length; i++) {
-            graphics2dPoster.addCurrentY(metrics.getHeight());
-            graphics2d.drawString(enWraps[i], MARGIN, graphics2dPoster.getCurrentY());
-        }
+        FontMetricsTable metrics = FontRegistry.getMetrics(graphics2d.getFont());
+        LineBreaker lines = FontUtil.lineBreaker().layout(graphics2dPoster.getEn(), metrics, graphics2dPoster.getSuitableWidth());
+        drawLines(graphics2dPoster, lines, metrics);
     }
 
+    /**
+     * @deprecated 布局已移至模板，使用 {@link #render(BufferedImage, BufferedImage, String, String, BufferedImage)}
+     */
+    @Deprecated
     public static Graphics2DPoster drawZhString(Graphics2DPoster graphics2dPoster) {
-        // 获取计算机上允许使用的中文字体
-        List<String> fontNames = Arrays
-                .asList(GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames());
-        if (fontNames == null || !fontNames.contains(USE_FONT_NAME)) {
-            throw new RuntimeException("计算机上未安装" + USE_FONT_NAME + "的字体");
-        }
-
         // 设置封面图和下方中文之间的距离
         graphics2dPoster.addCurrentY(30);
 
         Graphics2D graphics2d = graphics2dPoster.getGraphics2d();
         graphics2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
-        // Font 的构造参数依次是字体名字，字体式样，字体大小
-        Font font = new Font(USE_FONT_NAME, Font.PLAIN, 28);
+        // 字体按回退链解析（优先微软雅黑），同一字号只创建一次
+        Font font = FontRegistry.getFont(Font.PLAIN, 28);
         graphics2d.setFont(font);
         graphics2d.setColor(new Color(71, 71, 71));
 
-        FontDesignMetrics metrics = FontDesignMetrics.getMetrics(font);
+        FontMetricsTable metrics = FontRegistry.getMetrics(font);
         graphics2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER));
 
-        String zhWrap = FontUtil.makeZhLineFeed(graphics2dPoster.getZh(), metrics, graphics2dPoster.getSuitableWidth());
-        String[] zhWraps = zhWrap.split("\n");
-        for (int i = 0; i < zhWraps.length; i++) {
-            graphics2dPoster.addCurrentY(metrics.getHeight());
-            graphics2d.drawString(zhWraps[i], MARGIN, graphics2dPoster.getCurrentY());
-        }
+        LineBreaker lines = FontUtil.lineBreaker().layout(graphics2dPoster.getZh(), metrics, graphics2dPoster.getSuitableWidth());
+        drawLines(graphics2dPoster, lines, metrics);
 
         return graphics2dPoster;
     }
 
+    /**
+     * 按断行结果逐行绘制，重复的文本行经 {@link TextRunCache} 复用排版和栅格化结果
+     */
+    private static void drawLines(Graphics2DPoster graphics2dPoster, LineBreaker lines, FontMetricsTable metrics) {
+        Graphics2D graphics2d = graphics2dPoster.getGraphics2d();
+        TextRunCache cache = TextRunCache.getDefault();
+        char[] chars = lines.getChars();
+        for (int i = 0; i < lines.getLineCount(); i++) {
+            graphics2dPoster.addCurrentY(metrics.getHeight());
+            int start = lines.getLineStart(i);
+            cache.drawChars(graphics2d, chars, start, lines.getLineEnd(i) - start, MARGIN, graphics2dPoster.getCurrentY());
+        }
+    }
+
+    /**
+     * @deprecated 布局已移至模板，使用 {@link #render(BufferedImage, BufferedImage, String, String, BufferedImage)}
+     */
+    @Deprecated
     public static Graphics2DPoster drawImage(BufferedImage bgImage, BufferedImage picImage) throws IOException {
         // 封面图的起始坐标
         int pic_x = MARGIN, pic_y = MARGIN;
         // 封面图的宽度
-        int pic_width = bgImage.getWidth() - MARGIN * 2;
+        int pic_width = coverWidth(bgImage);
         // 封面图的高度
         int pic_height = picImage.getHeight() * pic_width / picImage.getWidth();
 
@@ -114,7 +133,8 @@ public class PosterUtil {
         graphics2dPoster.setBgImage(bgImage);
 
         // 在背景上绘制封面图
-        graphics2d.drawImage(picImage, pic_x, pic_y, pic_width, pic_height, null);
+        graphics2d.drawImage(ImageScaler.scale(picImage, pic_width, pic_height, CoverDecoder.getDefault().getInterpolation()),
+                pic_x, pic_y, null);
 
         // 记录此时的 y 坐标
         graphics2dPoster.setCurrentY(pic_y + pic_height);
@@ -122,6 +142,220 @@ public class PosterUtil {
         return graphics2dPoster;
     }
 
+    /**
+     * 按默认模板（templates/default.json）在背景上依次绘制封面图、中英文内容和二维码，全程只操作内存中的图片
+     *
+     * @param bgImage 背景图片（会被直接绘制）
+     * @param picImage 封面图片
+     * @param zh 中文内容
+     * @param en 英文内容（可为空）
+     * @param qrcodeImage 二维码图片
+     * @return 绘制完成的海报（即 bgImage）
+     */
+    public static BufferedImage render(BufferedImage bgImage, BufferedImage picImage, String zh, String en,
+                                       BufferedImage qrcodeImage) throws IOException {
+        PosterData data = new PosterData()
+                .image(SLOT_COVER, fitCover(picImage, bgImage))
+                .text(SLOT_ZH, zh)
+                .text(SLOT_EN, en)
+                .image(SLOT_QRCODE, qrcodeImage);
+        return defaultPlan(bgImage).render(bgImage, data);
+    }
+
+    /**
+     * 使用默认背景和二维码渲染海报
+     */
+    public static BufferedImage render(BufferedImage picImage, String zh, String en) throws IOException {
+        return render(picImage, zh, en, null);
+    }
+
+    /**
+     * 使用默认背景渲染海报，背景、页脚和默认二维码取自默认模板预合成的底图
+     *
+     * @param qrcodeImage 二维码图片，为空时使用默认二维码
+     */
+    public static BufferedImage render(BufferedImage picImage, String zh, String en, BufferedImage qrcodeImage) throws IOException {
+        PosterData data = new PosterData()
+                .image(SLOT_COVER, fitCover(picImage, AssetCache.get(AssetCache.DEFAULT_BG)))
+                .text(SLOT_ZH, zh)
+                .text(SLOT_EN, en)
+                .image(SLOT_QRCODE, qrcodeImage);
+        return PosterTemplate.getDefault().render(data);
+    }
+
+    /**
+     * 封面图在海报上的绘制宽度
+     */
+    static int coverWidth(BufferedImage bgImage) {
+        return defaultPlan(bgImage).getSlotWidth(SLOT_COVER);
+    }
+
+    /**
+     * 封面图在海报上最多可见的高度，超出画布的部分不解码
+     */
+    static int coverVisibleHeight(BufferedImage bgImage) {
+        return defaultPlan(bgImage).getSlotVisibleHeight(SLOT_COVER);
+    }
+
+    /**
+     * 封面宽度与绘制宽度不同时先用 {@link ImageScaler} 缩放，避免绘制时的最近邻缩放产生锯齿；
+     * 经 {@link CoverDecoder} / {@link RemoteImageCache} 按目标尺寸解码的封面直接使用
+     */
+    private static BufferedImage fitCover(BufferedImage picImage, BufferedImage bgImage) {
+        int width = coverWidth(bgImage);
+        if (picImage == null || width <= 0 || picImage.getWidth() == width) {
+            return picImage;
+        }
+        return ImageScaler.scaleToWidth(picImage, width, CoverDecoder.getDefault().getInterpolation());
+    }
+
+    private static RenderPlan defaultPlan(BufferedImage bgImage) {
+        return PosterTemplate.getDefault().plan(bgImage.getWidth(), bgImage.getHeight());
+    }
+
+    /**
+     * 网络封面经 {@link RemoteImageCache} 缓存，并按在该背景上的绘制宽度和可见高度解码
+     */
+    private static BufferedImage loadCover(String picURL, BufferedImage bgImage) throws IOException {
+        return RemoteImageCache.getDefault().get(picURL, coverWidth(bgImage), coverVisibleHeight(bgImage));
+    }
+
+    /**
+     * 本地封面按默认背景上的绘制宽度和可见高度解码
+     */
+    private static BufferedImage decodeCover(InputStream picStream) throws IOException {
+        BufferedImage bgImage = AssetCache.get(AssetCache.DEFAULT_BG);
+        return CoverDecoder.getDefault().decode(picStream, coverWidth(bgImage), coverVisibleHeight(bgImage));
+    }
+
+    private static BufferedImage decodeCover(File picFile) throws IOException {
+        BufferedImage bgImage = AssetCache.get(AssetCache.DEFAULT_BG);
+        return CoverDecoder.getDefault().decode(picFile, coverWidth(bgImage), coverVisibleHeight(bgImage));
+    }
+
+    /**
+     * 使用默认背景和二维码渲染网络封面海报，封面经 {@link RemoteImageCache} 缓存并预缩放到绘制宽度；
+     * 交给 writer 编码输出后把画布归还 {@link CanvasPool}
+     */
+    private static <T> T renderFromUrl(String picURL, String zh, String en, PosterWriter<T> writer) throws IOException {
+        BufferedImage bgImage = AssetCache.get(AssetCache.DEFAULT_BG);
+        BufferedImage picImage = loadCover(picURL, bgImage);
+        return write(picImage, bgImage, () -> render(picImage, zh, en), writer);
+    }
+
+    /**
+     * 在 {@link PixelBudget} 额度内绘制并编码输出：额度覆盖封面、画布和编码的中间结果，编码完成后归还。
+     * 之后把画布归还 {@link CanvasPool}，writer 不得保留对画布的引用
+     *
+     * @param bgImage 背景，决定画布尺寸
+     */
+    private static <T> T write(BufferedImage picImage, BufferedImage bgImage, PosterRenderer renderer,
+                               PosterWriter<T> writer) throws IOException {
+        PixelBudget.Permit permit = PixelBudget.getDefault()
+                .acquireRender(picImage, bgImage.getWidth(), bgImage.getHeight());
+        try {
+            BufferedImage posterImage = renderer.render();
+            try {
+                return writer.write(posterImage);
+            } finally {
+                CanvasPool.getDefault().release(posterImage);
+            }
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * 创建海报并以 JPEG 格式写入输出流，封面图在内存中解码，不产生任何临时文件
+     *
+     * @param picURL 图片URL
+     * @param zh 中文内容
+     * @param en 英文内容
+     * @param outputStream 目标输出流（不会被关闭）
+     */
+    public static void createToStream(String picURL, String zh, String en, OutputStream outputStream) throws IOException {
+        metrics().record(() -> renderFromUrl(picURL, zh, en, posterImage -> {
+            ImageStreams.writeJpeg(posterImage, outputStream);
+            return null;
+        }));
+    }
+
+    /**
+     * 创建海报并按指定编码器（格式、质量、渐进式等）写入输出流
+     *
+     * @param encoder 编码器，通常按渠道配置
+     * @param outputStream 目标输出流（不会被关闭）
+     */
+    public static void createToStream(String picURL, String zh, String en, ImageEncoder encoder,
+                                      OutputStream outputStream) throws IOException {
+        metrics().record(() -> renderFromUrl(picURL, zh, en, posterImage -> {
+            encoder.encode(posterImage, outputStream);
+            return null;
+        }));
+    }
+
+    /**
+     * 创建海报并返回 JPEG 字节
+     */
+    public static byte[] createToBytes(String picURL, String zh, String en) throws IOException {
+        return metrics().record(() -> renderFromUrl(picURL, zh, en, ImageStreams::toJpegBytes));
+    }
+
+    /**
+     * 创建海报并按指定编码器返回字节
+     */
+    public static byte[] createToBytes(String picURL, String zh, String en, ImageEncoder encoder) throws IOException {
+        return metrics().record(() -> renderFromUrl(picURL, zh, en, encoder::encode));
+    }
+
+    /**
+     * 创建海报并将 JPEG 字节写入调用方提供的缓冲区
+     *
+     * @return 写入的字节数
+     * @throws java.nio.BufferOverflowException 缓冲区剩余空间不足
+     */
+    public static int createToBuffer(String picURL, String zh, String en, ByteBuffer buffer) throws IOException {
+        return metrics().record(() -> renderFromUrl(picURL, zh, en, posterImage -> ImageStreams.writeJpeg(posterImage, buffer)));
+    }
+
+    /**
+     * 创建海报并以 JPEG data URI（data:image/jpeg;base64,...）写入输出流，
+     * 编码输出经 Base64 编码流直接写入目标，例如 HTTP 响应体
+     *
+     * @param outputStream 目标输出流（不会被关闭）
+     */
+    public static void createToDataUri(String picURL, String zh, String en, OutputStream outputStream) throws IOException {
+        metrics().record(() -> renderFromUrl(picURL, zh, en, posterImage -> {
+            DataUris.writeJpeg(posterImage, outputStream);
+            return null;
+        }));
+    }
+
+    /**
+     * 创建海报并返回 JPEG data URI 字符串
+     */
+    public static String createToDataUri(String picURL, String zh, String en) throws IOException {
+        return metrics().record(() -> renderFromUrl(picURL, zh, en, DataUris::toJpegString));
+    }
+
+    /**
+     * 从封面图输入流创建海报并写入输出流
+     *
+     * @param picStream 封面图数据（不会被关闭）
+     * @param zh 中文内容
+     * @param en 英文内容
+     * @param outputStream 目标输出流（不会被关闭）
+     */
+    public static void createFromStream(InputStream picStream, String zh, String en, OutputStream outputStream) throws IOException {
+        metrics().record(() -> {
+            BufferedImage picImage = decodeCover(picStream);
+            return write(picImage, AssetCache.get(AssetCache.DEFAULT_BG), () -> render(picImage, zh, en), posterImage -> {
+                ImageStreams.writeJpeg(posterImage, outputStream);
+                return null;
+            });
+        });
+    }
+
     /**
      * 创建海报
      *
@@ -137,79 +371,57 @@ public class PosterUtil {
                                 String bgImagePath, String qrcodeImagePath,
                                 Path outputDir) {
         try {
-            // 设置输出目录
-            if (outputDir == null) {
-                outputDir = FileUtil.DEFAULT_DIRECTORY;
-            }
-
-            // 确保输出目录存在
-            if (!Files.exists(outputDir)) {
-                Files.createDirectories(outputDir);
-            }
-
-            // 背景图片
-            BufferedImage bgImage;
-            if (StringUtils.isNotEmpty(bgImagePath)) {
-                File customBgFile = new File(bgImagePath);
-                if (customBgFile.exists()) {
-                    bgImage = ImageIO.read(customBgFile);
-                } else {
-                    throw new IOException("背景图片不存在: " + bgImagePath);
-                }
-            } else {
-                // 使用默认背景
-                File bgFile = FileUtil.read("bg_", ".jpg", "default_bgimg.jpg");
-                bgFile.deleteOnExit();
-                bgImage = ImageIO.read(bgFile);
-            }
-
-            // 下载并绘制封面图
-            File picFile = CapturePic.capture(picURL);
-            picFile.deleteOnExit();
-            BufferedImage picImage = ImageIO.read(picFile);
-            Graphics2DPoster graphics2dPoster = drawImage(bgImage, picImage);
-
-            // 绘制中文内容
-            graphics2dPoster.setZh(zh);
-            drawZhString(graphics2dPoster);
-
-            // 绘制英文内容（如果有）
-            if (StringUtils.isNotEmpty(en)) {
-                graphics2dPoster.setEn(en);
-                drawEnString(graphics2dPoster);
-            }
+            return metrics().record(() -> createFile(picURL, zh, en, bgImagePath, qrcodeImagePath, outputDir));
+        } catch (Exception e) {
+            // 保持返回失败信息的约定，失败原因已计入 poster.render.failures
+            logger.error("海报生成失败: " + e.getMessage(), e);
+            return "海报生成失败: " + e.getMessage();
+        }
+    }
 
-            // 二维码
-            BufferedImage qrcodeImage;
-            if (StringUtils.isNotEmpty(qrcodeImagePath)) {
-                File customQrcodeFile = new File(qrcodeImagePath);
-                if (customQrcodeFile.exists()) {
-                    qrcodeImage = ImageIO.read(customQrcodeFile);
-                } else {
-                    throw new IOException("二维码图片不存在: " + qrcodeImagePath);
-                }
-            } else {
-                // 使用默认二维码
-                File qrcodeFile = FileUtil.read("qrcode_", ".jpg", "default_qrcodeimg.jpg");
-                qrcodeFile.deleteOnExit();
-                qrcodeImage = ImageIO.read(qrcodeFile);
-            }
+    /**
+     * 相同参数（封面、文案、背景与二维码文件版本、模板素材版本）的海报只生成一次：编码结果取自 {@link PosterResultCache}，
+     * 每次调用仍写入各自独立的输出文件，调用方读完后可以自行删除
+     */
+    private static String createFile(String picURL, String zh, String en, String bgImagePath, String qrcodeImagePath,
+                                     Path outputDir) throws IOException {
+        Path directory = prepareOutputDir(outputDir);
+        ImageEncoder encoder = ImageEncoder.jpeg();
+        String key = PosterCacheKey.of(PosterTemplate.getDefault())
+                .encoder(encoder)
+                .add("cover", picURL)
+                .add("zh", zh)
+                .add("en", en)
+                .file("bg", bgImagePath)
+                .file("qrcode", qrcodeImagePath)
+                .build();
+        PosterResultCache resultCache = PosterResultCache.getDefault();
+        String extension = encoder.getEffectiveFormat().getExtension();
+        PosterResultCache.Entry cached = resultCache.get(key);
+        if (cached != null) {
+            return writePosterFile(cached.getBytes(), directory, extension);
+        }
 
-            graphics2dPoster.setQrcodeImage(qrcodeImage);
-            drawQrcode(graphics2dPoster);
+        BufferedImage qrcodeImage = loadQrcodeImage(qrcodeImagePath);
 
-            // 释放图形上下文，以及它正在使用的任何系统资源。
-            graphics2dPoster.getGraphics2d().dispose();
+        byte[] posterData;
+        if (StringUtils.isEmpty(bgImagePath)) {
+            // 默认背景：从预合成底图开始绘制
+            BufferedImage bgImage = AssetCache.get(AssetCache.DEFAULT_BG);
+            BufferedImage picImage = loadCover(picURL, bgImage);
+            posterData = write(picImage, bgImage, () -> render(picImage, zh, en, qrcodeImage), encoder::encode);
+        } else {
+            BufferedImage bgImage = loadBgImage(bgImagePath);
 
-            // 创建输出文件
-            File posterFile = Files.createTempFile(outputDir, "poster_", ".jpg").toFile();
-            ImageIO.write(graphics2dPoster.getBgImage(), "jpg", posterFile);
+            // 获取封面图（内存解码，重复封面命中缓存）
+            BufferedImage picImage = loadCover(picURL, bgImage);
 
-            return posterFile.getAbsolutePath();
-        } catch (Exception e) {
-            logger.error("海报生成失败: " + e.getMessage(), e);
-            return "海报生成失败: " + e.getMessage();
+            posterData = write(picImage, bgImage, () -> render(bgImage, picImage, zh, en, qrcodeImage), encoder::encode);
         }
+
+        // 创建输出文件
+        resultCache.put(key, posterData);
+        return writePosterFile(posterData, directory, extension);
     }
 
     /**
@@ -230,62 +442,128 @@ public class PosterUtil {
      */
     public static String createFromLocalImage(String picPath, String zh, String en, Path outputDir) {
         try {
-            if (StringUtils.isEmpty(picPath)) {
-                throw new IllegalArgumentException("图片路径不能为空");
-            }
+            return metrics().record(() -> {
+                File picFile = checkLocalImage(picPath);
+                Path directory = prepareOutputDir(outputDir);
+
+                // 绘制封面图并创建输出文件
+                BufferedImage picImage = decodeCover(picFile);
+                return write(picImage, AssetCache.get(AssetCache.DEFAULT_BG), () -> render(picImage, zh, en),
+                        image -> writePosterFile(image, directory));
+            });
+        } catch (Exception e) {
+            logger.error("海报生成失败: " + e.getMessage(), e);
+            return "海报生成失败: " + e.getMessage();
+        }
+    }
 
-            File picFile = new File(picPath);
-            if (!picFile.exists()) {
-                throw new IOException("图片不存在: " + picPath);
-            }
+    /**
+     * 使用本地图片创建海报并写入输出流
+     *
+     * @param picPath 本地图片路径
+     * @param zh 中文内容
+     * @param en 英文内容
+     * @param outputStream 目标输出流（不会被关闭）
+     */
+    public static void createFromLocalImage(String picPath, String zh, String en, OutputStream outputStream) throws IOException {
+        metrics().record(() -> {
+            BufferedImage picImage = decodeCover(checkLocalImage(picPath));
+            return write(picImage, AssetCache.get(AssetCache.DEFAULT_BG), () -> render(picImage, zh, en), posterImage -> {
+                ImageStreams.writeJpeg(posterImage, outputStream);
+                return null;
+            });
+        });
+    }
 
-            // 设置输出目录
-            if (outputDir == null) {
-                outputDir = FileUtil.DEFAULT_DIRECTORY;
-            }
+    /**
+     * 设置输出目录（为null时使用系统临时目录），并确保目录存在
+     */
+    private static Path prepareOutputDir(Path outputDir) throws IOException {
+        Path directory = outputDir != null ? outputDir : FileUtil.DEFAULT_DIRECTORY;
+        if (!Files.exists(directory)) {
+            Files.createDirectories(directory);
+        }
+        return directory;
+    }
 
-            // 确保输出目录存在
-            if (!Files.exists(outputDir)) {
-                Files.createDirectories(outputDir);
-            }
+    private static File checkLocalImage(String picPath) throws IOException {
+        if (StringUtils.isEmpty(picPath)) {
+            throw new IllegalArgumentException("图片路径不能为空");
+        }
 
-            // 背景
-            File bgFile = FileUtil.read("bg_", ".jpg", "default_bgimg.jpg");
-            bgFile.deleteOnExit();
-            BufferedImage bgImage = ImageIO.read(bgFile);
+        File picFile = new File(picPath);
+        if (!picFile.exists()) {
+            throw new IOException("图片不存在: " + picPath);
+        }
+        return picFile;
+    }
 
-            // 绘制封面图
-            BufferedImage picImage = ImageIO.read(picFile);
-            Graphics2DPoster graphics2dPoster = drawImage(bgImage, picImage);
+    /**
+     * 自定义图片与封面一样经 {@link CoverDecoder} 解码，先检查尺寸并占用像素内存预算
+     */
+    private static BufferedImage loadBgImage(String bgImagePath) throws IOException {
+        if (StringUtils.isEmpty(bgImagePath)) {
+            // 使用默认背景（缓存副本）
+            return AssetCache.copy(AssetCache.DEFAULT_BG);
+        }
+        File customBgFile = new File(bgImagePath);
+        if (!customBgFile.exists()) {
+            throw new IOException("背景图片不存在: " + bgImagePath);
+        }
+        return CoverDecoder.getDefault().decode(customBgFile, 0, 0);
+    }
 
-            // 绘制中文内容
-            graphics2dPoster.setZh(zh);
-            drawZhString(graphics2dPoster);
+    private static BufferedImage loadQrcodeImage(String qrcodeImagePath) throws IOException {
+        if (StringUtils.isEmpty(qrcodeImagePath)) {
+            // 使用默认二维码（只读共享）
+            return AssetCache.get(AssetCache.DEFAULT_QRCODE);
+        }
+        File customQrcodeFile = new File(qrcodeImagePath);
+        if (!customQrcodeFile.exists()) {
+            throw new IOException("二维码图片不存在: " + qrcodeImagePath);
+        }
+        return CoverDecoder.getDefault().decode(customQrcodeFile, 0, 0);
+    }
 
-            // 绘制英文内容（如果有）
-            if (StringUtils.isNotEmpty(en)) {
-                graphics2dPoster.setEn(en);
-                drawEnString(graphics2dPoster);
-            }
+    /**
+     * 先编码到内存再一次写入文件，编码和磁盘写入分别计入 encode / write 阶段
+     */
+    private static String writePosterFile(BufferedImage posterImage, Path outputDir) throws IOException {
+        ImageEncoder encoder = ImageEncoder.jpeg();
+        return writePosterFile(encoder.encode(posterImage), outputDir, encoder.getEffectiveFormat().getExtension());
+    }
 
-            // 二维码
-            File qrcodeFile = FileUtil.read("qrcode_", ".jpg", "default_qrcodeimg.jpg");
-            qrcodeFile.deleteOnExit();
-            BufferedImage qrcodeImage = ImageIO.read(qrcodeFile);
-            graphics2dPoster.setQrcodeImage(qrcodeImage);
-            drawQrcode(graphics2dPoster);
+    /**
+     * 把编码结果写入输出目录下新建的独立文件
+     */
+    private static String writePosterFile(byte[] posterData, Path outputDir, String extension) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Path posterFile = Files.createTempFile(outputDir, "poster_", extension);
+            Files.write(posterFile, posterData);
+            return posterFile.toAbsolutePath().toString();
+        } finally {
+            metrics().recordStage(PosterMetrics.Stage.WRITE, start);
+        }
+    }
 
-            // 释放图形上下文
-            graphics2dPoster.getGraphics2d().dispose();
+    private static PosterMetrics metrics() {
+        return PosterMetrics.getDefault();
+    }
 
-            // 创建输出文件
-            File posterFile = Files.createTempFile(outputDir, "poster_", ".jpg").toFile();
-            ImageIO.write(graphics2dPoster.getBgImage(), "jpg", posterFile);
+    /**
+     * 绘制海报画布
+     */
+    @FunctionalInterface
+    private interface PosterRenderer {
+        BufferedImage render() throws IOException;
+    }
 
-            return posterFile.getAbsolutePath();
-        } catch (Exception e) {
-            logger.error("海报生成失败: " + e.getMessage(), e);
-            return "海报生成失败: " + e.getMessage();
-        }
+    /**
+     * 海报画布的输出（编码、写文件等）
+     */
+    @FunctionalInterface
+    private interface PosterWriter<T> {
+        T write(BufferedImage posterImage) throws IOException;
     }
 }
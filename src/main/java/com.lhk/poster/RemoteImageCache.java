@@ -0,0 +1,433 @@
+package com.lhk.poster;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 网络封面图两级缓存
+ * <ul>
+ *     <li>堆内层：按 (URL, 目标宽度, 可见高度) 缓存按目标尺寸解码的图片，按像素总量预算做 LRU 淘汰；</li>
+ *     <li>磁盘层（可选）：按 URL 缓存原始字节及 ETag / Last-Modified，按字节预算做 LRU 淘汰。</li>
+ * </ul>
+ * 条目超过 TTL 后不会直接丢弃，而是携带校验信息发起条件请求，服务端返回 304 时继续使用缓存内容。
+ * 堆内层返回的图片被所有调用方共享，只能读取不能修改。
+ */
+public class RemoteImageCache {
+
+    /**
+     * 默认堆内像素预算（约 128MB 的 int 像素）
+     */
+    public static final long DEFAULT_MAX_PIXELS = 32L * 1024 * 1024;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static volatile RemoteImageCache defaultInstance;
+
+    private final ImageFetcher fetcher;
+    private final DiskCache diskCache;
+    private final long maxPixels;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Key, HeapEntry> heap = new LinkedHashMap<>(64, 0.75f, true);
+    private long heapPixels;
+    private final ConcurrentMap<Key, CompletableFuture<BufferedImage>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong heapEvictions = new AtomicLong();
+
+    /**
+     * @param fetcher 下载器
+     * @param maxPixels 堆内层像素预算
+     * @param ttlMillis 条目免校验的有效期（毫秒）
+     * @param diskCache 磁盘层，为 null 时不启用
+     */
+    public RemoteImageCache(ImageFetcher fetcher, long maxPixels, long ttlMillis, DiskCache diskCache) {
+        this.fetcher = fetcher;
+        this.maxPixels = maxPixels;
+        this.ttlMillis = ttlMillis;
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * 全局共享的缓存（仅堆内层），PosterUtil 的网络封面走该实例
+     */
+    public static RemoteImageCache getDefault() {
+        RemoteImageCache cache = defaultInstance;
+        if (cache == null) {
+            synchronized (RemoteImageCache.class) {
+                cache = defaultInstance;
+                if (cache == null) {
+                    cache = new RemoteImageCache(ImageFetcher.getDefault(), DEFAULT_MAX_PIXELS, DEFAULT_TTL_MILLIS, null);
+                    defaultInstance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 替换全局共享的缓存，例如启用磁盘层或调整预算
+     */
+    public static void setDefault(RemoteImageCache cache) {
+        defaultInstance = Objects.requireNonNull(cache);
+    }
+
+    /**
+     * 同步获取封面图
+     *
+     * @param url 图片URL
+     * @param targetWidth 预缩放宽度（按比例缩放），小于等于0时保持原图
+     * @return 共享的只读图片
+     * @throws IOException 下载或解码失败
+     */
+    public BufferedImage get(String url, int targetWidth) throws IOException {
+        return get(url, targetWidth, 0);
+    }
+
+    /**
+     * 同步获取封面图，只解码画布内可见的部分。磁盘读取、解码和缩放在调用线程上执行
+     *
+     * @param url 图片URL
+     * @param targetWidth 预缩放宽度（按比例缩放），小于等于0时保持原图
+     * @param maxHeight 预缩放后的最大可见高度，小于等于0时不限制
+     * @return 共享的只读图片
+     * @throws IOException 下载或解码失败，像素数超出预算时为 {@link CoverDecoder.ImageTooLargeException}
+     */
+    public BufferedImage get(String url, int targetWidth, int maxHeight) throws IOException {
+        // 解码可能在像素预算上等待，放在调用线程上执行，不占用 TiledRenderer、ImageScaler 依赖的公共 ForkJoinPool
+        CallerRunsExecutor callerRuns = new CallerRunsExecutor();
+        try {
+            return callerRuns.runUntilDone(getAsync(url, targetWidth, maxHeight, callerRuns));
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("获取封面图失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 异步获取封面图，解码和缩放在公共 ForkJoinPool 上执行
+     */
+    public CompletableFuture<BufferedImage> getAsync(String url, int targetWidth) {
+        return getAsync(url, targetWidth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 异步获取封面图
+     *
+     * @param url 图片URL
+     * @param targetWidth 预缩放宽度，小于等于0时保持原图
+     * @param decodeExecutor 执行磁盘读取、解码和缩放的线程池
+     */
+    public CompletableFuture<BufferedImage> getAsync(String url, int targetWidth, Executor decodeExecutor) {
+        return getAsync(url, targetWidth, 0, decodeExecutor);
+    }
+
+    /**
+     * 异步获取封面图
+     *
+     * @param url 图片URL
+     * @param targetWidth 预缩放宽度，小于等于0时保持原图
+     * @param maxHeight 预缩放后的最大可见高度，超出部分不解码；小于等于0时不限制
+     * @param decodeExecutor 执行磁盘读取、解码和缩放的线程池
+     */
+    public CompletableFuture<BufferedImage> getAsync(String url, int targetWidth, int maxHeight, Executor decodeExecutor) {
+        Key key = new Key(url, Math.max(targetWidth, 0), Math.max(maxHeight, 0));
+        HeapEntry cached;
+        synchronized (heap) {
+            cached = heap.get(key);
+        }
+        if (cached != null && cached.isFresh(ttlMillis)) {
+            heapHits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached.image);
+        }
+
+        CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> existing = loading.putIfAbsent(key, created);
+        if (existing != null) {
+            // 返回独立的视图，避免某个调用方取消时影响其他等待者
+            return existing.thenApply(Function.identity());
+        }
+        load(key, cached, decodeExecutor).whenComplete((image, error) -> {
+            loading.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(image);
+            }
+        });
+        return created.thenApply(Function.identity());
+    }
+
+    /**
+     * 移除某个 URL 的所有堆内条目（磁盘层在下次校验时自然更新）
+     */
+    public void invalidate(String url) {
+        synchronized (heap) {
+            Iterator<Map.Entry<Key, HeapEntry>> it = heap.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, HeapEntry> entry = it.next();
+                if (entry.getKey().url.equals(url)) {
+                    heapPixels -= entry.getValue().pixels;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public Stats stats() {
+        long pixels;
+        int entries;
+        synchronized (heap) {
+            pixels = heapPixels;
+            entries = heap.size();
+        }
+        return new Stats(heapHits.get(), diskHits.get(), revalidations.get(), misses.get(),
+                heapEvictions.get(), diskCache != null ? diskCache.getEvictionCount() : 0L, entries, pixels,
+                diskCache != null ? diskCache.getTotalBytes() : 0L);
+    }
+
+    private CompletableFuture<BufferedImage> load(Key key, HeapEntry stale, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> diskCache != null ? diskCache.get(key.url) : null, executor)
+                .thenCompose(disk -> {
+                    if (stale == null && disk != null && System.currentTimeMillis() - disk.getStoredAt() < ttlMillis) {
+                        diskHits.incrementAndGet();
+                        return CompletableFuture.completedFuture(store(key, decode(disk.getBytes(), key),
+                                disk.getEtag(), disk.getLastModified()));
+                    }
+                    String etag = stale != null ? stale.etag : disk != null ? disk.getEtag() : null;
+                    String lastModified = stale != null ? stale.lastModified : disk != null ? disk.getLastModified() : null;
+                    return fetcher.fetchIfModified(key.url, etag, lastModified)
+                            .thenApplyAsync(response -> onResponse(key, stale, disk, response), executor);
+                });
+    }
+
+    private BufferedImage onResponse(Key key, HeapEntry stale, DiskCache.Entry disk, ImageFetcher.Response response) {
+        if (response.isNotModified() && (stale != null || disk != null)) {
+            revalidations.incrementAndGet();
+            if (disk != null) {
+                diskCache.touch(key.url);
+            }
+            String etag = response.getEtag() != null ? response.getEtag() : stale != null ? stale.etag : disk.getEtag();
+            String lastModified = response.getLastModified() != null ? response.getLastModified()
+                    : stale != null ? stale.lastModified : disk.getLastModified();
+            BufferedImage image = stale != null ? stale.image : decode(disk.getBytes(), key);
+            return store(key, image, etag, lastModified);
+        }
+        if (response.isNotModified()) {
+            throw new CompletionException(new IOException("服务端返回304但本地没有缓存: " + key.url));
+        }
+        misses.incrementAndGet();
+        if (diskCache != null) {
+            diskCache.put(key.url, response.getBytes(), response.getEtag(), response.getLastModified());
+        }
+        return store(key, decode(response.getBytes(), key), response.getEtag(), response.getLastModified());
+    }
+
+    private BufferedImage store(Key key, BufferedImage image, String etag, String lastModified) {
+        HeapEntry entry = new HeapEntry(image, etag, lastModified);
+        if (entry.pixels > maxPixels) {
+            // 单张超出预算，不缓存
+            return image;
+        }
+        synchronized (heap) {
+            HeapEntry previous = heap.put(key, entry);
+            heapPixels += entry.pixels - (previous != null ? previous.pixels : 0L);
+            Iterator<HeapEntry> it = heap.values().iterator();
+            while (heapPixels > maxPixels && it.hasNext()) {
+                HeapEntry eldest = it.next();
+                heapPixels -= eldest.pixels;
+                it.remove();
+                heapEvictions.incrementAndGet();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 按目标尺寸解码：大图只按抽样解码可见部分，不再先解码整图再缩放
+     */
+    private static BufferedImage decode(byte[] bytes, Key key) {
+        try {
+            return CoverDecoder.getDefault().decode(bytes, key.width, key.maxHeight);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static final class Key {
+        final String url;
+        final int width;
+        final int maxHeight;
+
+        Key(String url, int width, int maxHeight) {
+            this.url = url;
+            this.width = width;
+            this.maxHeight = maxHeight;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && maxHeight == key.maxHeight && url.equals(key.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * url.hashCode() + width) * 31 + maxHeight;
+        }
+    }
+
+    private static final class HeapEntry {
+        final BufferedImage image;
+        final String etag;
+        final String lastModified;
+        final long pixels;
+        final long validatedAt = System.currentTimeMillis();
+
+        HeapEntry(BufferedImage image, String etag, String lastModified) {
+            this.image = image;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.pixels = (long) image.getWidth() * image.getHeight();
+        }
+
+        boolean isFresh(long ttlMillis) {
+            return System.currentTimeMillis() - validatedAt < ttlMillis;
+        }
+    }
+
+    /**
+     * 缓存统计快照
+     */
+    public static final class Stats {
+        private final long heapHits;
+        private final long diskHits;
+        private final long revalidations;
+        private final long misses;
+        private final long heapEvictions;
+        private final long diskEvictions;
+        private final int heapEntries;
+        private final long heapPixels;
+        private final long diskBytes;
+
+        Stats(long heapHits, long diskHits, long revalidations, long misses, long heapEvictions, long diskEvictions,
+              int heapEntries, long heapPixels, long diskBytes) {
+            this.heapHits = heapHits;
+            this.diskHits = diskHits;
+            this.revalidations = revalidations;
+            this.misses = misses;
+            this.heapEvictions = heapEvictions;
+            this.diskEvictions = diskEvictions;
+            this.heapEntries = heapEntries;
+            this.heapPixels = heapPixels;
+            this.diskBytes = diskBytes;
+        }
+
+        public long getHeapHits() {
+            return heapHits;
+        }
+
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        /**
+         * 条件请求返回 304、继续使用缓存内容的次数
+         */
+        public long getRevalidations() {
+            return revalidations;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getHeapEvictions() {
+            return heapEvictions;
+        }
+
+        public long getDiskEvictions() {
+            return diskEvictions;
+        }
+
+        public int getHeapEntries() {
+            return heapEntries;
+        }
+
+        public long getHeapPixels() {
+            return heapPixels;
+        }
+
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{heapHits=" + heapHits + ", diskHits=" + diskHits + ", revalidations=" + revalidations
+                    + ", misses=" + misses + ", heapEvictions=" + heapEvictions + ", diskEvictions=" + diskEvictions
+                    + ", heapEntries=" + heapEntries + ", heapPixels=" + heapPixels + ", diskBytes=" + diskBytes + '}';
+        }
+    }
+
+    /**
+     * 同步获取时使用的执行器：任务先入队，由等待结果的调用线程逐个执行
+     */
+    private static final class CallerRunsExecutor implements Executor {
+        private static final Runnable WAKE_UP = () -> {
+        };
+
+        private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        /**
+         * 执行入队的任务直到 future 完成；与 join 一样不响应中断，只在返回前恢复中断状态
+         */
+        <T> T runUntilDone(CompletableFuture<T> future) {
+            future.whenComplete((value, error) -> tasks.add(WAKE_UP));
+            boolean interrupted = false;
+            while (!future.isDone()) {
+                try {
+                    tasks.take().run();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return future.join();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.lhk.poster;
+
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模板针对某个画布尺寸编译出的不可变渲染计划
+ * <p>
+ * 编译时按当前已加载的字体解析文本图层的字体，把锚点、边距、字体相关的长度全部换算成像素，固定文本也在此时完成断行；
+ * 每次渲染只需把 {@link PosterData} 绑定到插槽上：插槽文本断行、插槽图片按宽高比计算尺寸，
+ * 得到 {@link PosterLayout} 后依次绘制。实例线程安全，由 {@link PosterTemplate#plan(int, int)} 缓存。
+ */
+public final class RenderPlan {
+
+    private final String templateName;
+    private final int width;
+    private final int height;
+    private final List<Layer> layers;
+    private final Map<String, Integer> slotWidths;
+    private final Map<String, Integer> slotVisibleHeights;
+
+    RenderPlan(String templateName, int width, int height, List<TemplateLayer> templateLayers) {
+        this.templateName = templateName;
+        this.width = width;
+        this.height = height;
+        List<Layer> compiled = new ArrayList<>(templateLayers.size());
+        Map<String, Integer> widths = new HashMap<>();
+        Map<String, Integer> visibleHeights = new HashMap<>();
+        // 位于插槽流式图层之后的流式图层，位置随数据变化
+        boolean dynamicFlow = false;
+        for (TemplateLayer layer : templateLayers) {
+            boolean fixedPosition = layer.anchor != TemplateLayer.Anchor.FLOW || !dynamicFlow;
+            if (layer.anchor == TemplateLayer.Anchor.FLOW && layer.slot != null) {
+                dynamicFlow = true;
+            }
+            if (layer.type == TemplateLayer.Type.IMAGE) {
+                ImageLayer imageLayer = new ImageLayer(layer, compiled.size(), fixedPosition);
+                compiled.add(imageLayer);
+                if (layer.slot != null && imageLayer.width >= 0) {
+                    widths.put(layer.slot, imageLayer.width);
+                    // 按比例缩放的顶部锚定或流式图层，绘制位置不小于 y，画布底边以下的部分不可见
+                    if (imageLayer.height < 0 && !layer.anchor.isBottom()) {
+                        visibleHeights.put(layer.slot, Math.max(0, height - imageLayer.y));
+                    }
+                }
+            } else {
+                compiled.add(new TextLayer(layer, compiled.size(), fixedPosition));
+            }
+        }
+        this.layers = Collections.unmodifiableList(compiled);
+        this.slotWidths = Collections.unmodifiableMap(widths);
+        this.slotVisibleHeights = Collections.unmodifiableMap(visibleHeights);
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 图片插槽的绘制宽度，可用于提前把图片缩放到目标尺寸
+     *
+     * @return 固定宽度，宽度随图片变化时返回 -1
+     */
+    public int getSlotWidth(String slot) {
+        Integer slotWidth = slotWidths.get(slot);
+        return slotWidth == null ? -1 : slotWidth;
+    }
+
+    /**
+     * 图片插槽在画布内最多可见的高度（按 {@link #getSlotWidth(String)} 缩放后），超出部分无需解码
+     *
+     * @return 可见高度上限，无法确定时返回 -1
+     */
+    public int getSlotVisibleHeight(String slot) {
+        Integer visibleHeight = slotVisibleHeights.get(slot);
+        return visibleHeight == null ? -1 : visibleHeight;
+    }
+
+    /**
+     * 排版：把数据绑定到插槽，计算出全部绘制操作
+     * <p>
+     * 同时标记出本次可以取自预合成底图的静态操作：固定素材、固定文本以及未绑定数据的缺省插槽图片，
+     * 要求其位置不随数据变化，并且与先于它绘制的动态操作互不相交（这样先画静态图层不改变合成结果）。
+     *
+     * @throws IllegalArgumentException 缺少非可选插槽的数据
+     */
+    public PosterLayout layout(PosterData data) {
+        long start = System.nanoTime();
+        List<DrawOp> ops = new ArrayList<>(layers.size());
+        boolean[] staticOps = new boolean[layers.size()];
+        List<Rectangle> dynamicBounds = new ArrayList<>(layers.size());
+        long staticKey = 0;
+        int cursor = 0;
+        for (Layer layer : layers) {
+            int index = ops.size();
+            cursor = layer.layout(data, cursor, ops);
+            if (ops.size() == index) {
+                continue;
+            }
+            Rectangle bounds = ops.get(index).getBounds();
+            if (layer.canPrecompose(data) && !intersectsAny(bounds, dynamicBounds)) {
+                staticOps[index] = true;
+                staticKey |= 1L << layer.index;
+            } else {
+                dynamicBounds.add(bounds);
+            }
+        }
+        PosterMetrics.getDefault().recordStage(PosterMetrics.Stage.LAYOUT, start);
+        return new PosterLayout(width, height, ops, Arrays.copyOf(staticOps, ops.size()), staticKey);
+    }
+
+    private static boolean intersectsAny(Rectangle bounds, List<Rectangle> others) {
+        for (Rectangle other : others) {
+            if (bounds.intersects(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 排版并绘制到画布上
+     *
+     * @param canvas 画布（通常是背景图的可写副本），尺寸应与计划一致
+     * @param data 插槽数据
+     * @return canvas
+     */
+    public BufferedImage render(BufferedImage canvas, PosterData data) {
+        PosterLayout layout = layout(data);
+        PosterMetrics.getDefault().recordCanvas(canvas);
+        long start = System.nanoTime();
+        try {
+            layout.draw(canvas);
+        } finally {
+            PosterMetrics.getDefault().recordStage(PosterMetrics.Stage.DRAW, start);
+        }
+        return canvas;
+    }
+
+    private abstract static class Layer {
+
+        final TemplateLayer spec;
+        final int index;
+        /**
+         * 位置不随数据变化；静态键按图层序号占位，只有前 64 个图层参与预合成
+         */
+        final boolean fixedPosition;
+
+        Layer(TemplateLayer spec, int index, boolean fixedPosition) {
+            this.spec = spec;
+            this.index = index;
+            this.fixedPosition = fixedPosition && index < Long.SIZE;
+        }
+
+        /**
+         * 本次渲染中该图层的内容和位置是否与数据无关
+         */
+        boolean canPrecompose(PosterData data) {
+            if (!fixedPosition) {
+                return false;
+            }
+            if (spec.isStatic()) {
+                return true;
+            }
+            // 缺省插槽图片：未绑定数据，或绑定的正是缺省素材本身
+            if (spec.type == TemplateLayer.Type.IMAGE && spec.image != null) {
+                BufferedImage image = data.getImage(spec.slot);
+                return image == null || image == spec.image;
+            }
+            return false;
+        }
+
+        /**
+         * @param cursor 流式布局当前的 y 坐标
+         * @return 排版后流式布局的 y 坐标
+         */
+        abstract int layout(PosterData data, int cursor, List<DrawOp> ops);
+    }
+
+    private final class ImageLayer extends Layer {
+
+        final int x;
+        final int y;
+        /**
+         * 固定宽高，-1 表示随图片计算
+         */
+        final int width;
+        final int height;
+
+        ImageLayer(TemplateLayer spec, int index, boolean fixedPosition) {
+            super(spec, index, fixedPosition);
+            this.x = spec.x.resolve(null);
+            this.y = spec.y.resolve(null);
+            if (spec.width != null) {
+                this.width = spec.width;
+            } else if (spec.right != null) {
+                this.width = RenderPlan.this.width - x - spec.right.resolve(null);
+            } else {
+                this.width = -1;
+            }
+            this.height = spec.height != null ? spec.height : -1;
+        }
+
+        @Override
+        int layout(PosterData data, int cursor, List<DrawOp> ops) {
+            BufferedImage image = spec.slot == null ? null : data.getImage(spec.slot);
+            if (image == null) {
+                image = spec.image;
+            }
+            if (image == null) {
+                if (spec.optional) {
+                    return cursor;
+                }
+                throw new IllegalArgumentException("模板 " + templateName + " 缺少图片数据: " + spec.slot);
+            }
+
+            int drawWidth, drawHeight;
+            if (width >= 0) {
+                drawWidth = width;
+                drawHeight = height >= 0 ? height : image.getHeight() * width / image.getWidth();
+            } else if (height >= 0) {
+                drawWidth = image.getWidth() * height / image.getHeight();
+                drawHeight = height;
+            } else {
+                drawWidth = image.getWidth();
+                drawHeight = image.getHeight();
+            }
+
+            int drawX = spec.anchor.isRight() ? RenderPlan.this.width - x - drawWidth : x;
+            int drawY;
+            if (spec.anchor == TemplateLayer.Anchor.FLOW) {
+                drawY = cursor + y;
+            } else if (spec.anchor.isBottom()) {
+                drawY = RenderPlan.this.height - y - drawHeight;
+            } else {
+                drawY = y;
+            }
+            ops.add(new DrawOp.ImageOp(image, drawX, drawY, drawWidth, drawHeight));
+            return spec.anchor == TemplateLayer.Anchor.FLOW ? drawY + drawHeight : cursor;
+        }
+    }
+
+    private final class TextLayer extends Layer {
+
+        final int x;
+        final int y;
+        final int maxWidth;
+        final int lineHeight;
+        final Font font;
+        final FontMetricsTable metrics;
+        /**
+         * 固定文本在编译时完成断行
+         */
+        final char[] fixedChars;
+        final int[] fixedStarts;
+        final int[] fixedEnds;
+
+        TextLayer(TemplateLayer spec, int index, boolean fixedPosition) {
+            super(spec, index, fixedPosition);
+            this.font = spec.resolveFont();
+            this.metrics = FontRegistry.getMetrics(font);
+            this.x = spec.x.resolve(metrics);
+            this.y = spec.y.resolve(metrics);
+            int rightMargin = spec.right != null ? spec.right.resolve(metrics) : x;
+            this.maxWidth = RenderPlan.this.width - x - rightMargin;
+            this.lineHeight = metrics.getHeight();
+            if (spec.isStatic()) {
+                LineBreaker lines = FontUtil.lineBreaker().layout(spec.text, metrics, maxWidth);
+                this.fixedChars = Arrays.copyOf(lines.getChars(), spec.text.length());
+                this.fixedStarts = new int[lines.getLineCount()];
+                this.fixedEnds = new int[lines.getLineCount()];
+                for (int i = 0; i < fixedStarts.length; i++) {
+                    fixedStarts[i] = lines.getLineStart(i);
+                    fixedEnds[i] = lines.getLineEnd(i);
+                }
+            } else {
+                this.fixedChars = null;
+                this.fixedStarts = null;
+                this.fixedEnds = null;
+            }
+        }
+
+        @Override
+        int layout(PosterData data, int cursor, List<DrawOp> ops) {
+            char[] chars;
+            int[] starts;
+            int[] ends;
+            if (spec.isStatic()) {
+                chars = fixedChars;
+                starts = fixedStarts;
+                ends = fixedEnds;
+            } else {
+                String text = data.getText(spec.slot);
+                if (text == null || text.isEmpty()) {
+                    if (spec.optional) {
+                        return cursor;
+                    }
+                    throw new IllegalArgumentException("模板 " + templateName + " 缺少文本数据: " + spec.slot);
+                }
+                LineBreaker lines = FontUtil.lineBreaker().layout(text, metrics, maxWidth);
+                chars = Arrays.copyOf(lines.getChars(), text.length());
+                starts = new int[lines.getLineCount()];
+                ends = new int[lines.getLineCount()];
+                for (int i = 0; i < starts.length; i++) {
+                    starts[i] = lines.getLineStart(i);
+                    ends[i] = lines.getLineEnd(i);
+                }
+            }
+
+            int count = starts.length;
+            int[] xs = new int[count];
+            int[] widths = new int[count];
+            int[] baselines = new int[count];
+            for (int i = 0; i < count; i++) {
+                widths[i] = metrics.stringWidth(chars, starts[i], ends[i]);
+                xs[i] = spec.anchor.isRight() ? RenderPlan.this.width - x - widths[i] : x;
+            }
+            if (spec.anchor == TemplateLayer.Anchor.FLOW) {
+                // 与上一个流式图层间隔 y，之后每行先下移一个行高再以该位置为基线绘制
+                cursor += y;
+                for (int i = 0; i < count; i++) {
+                    cursor += lineHeight;
+                    baselines[i] = cursor;
+                }
+            } else if (spec.anchor.isBottom()) {
+                // y 为末行基线到画布底边的距离
+                int last = RenderPlan.this.height - y;
+                for (int i = 0; i < count; i++) {
+                    baselines[i] = last - (count - 1 - i) * lineHeight;
+                }
+            } else {
+                // y 为首行基线到画布顶边的距离
+                for (int i = 0; i < count; i++) {
+                    baselines[i] = y + i * lineHeight;
+                }
+            }
+            ops.add(new DrawOp.TextOp(font, spec.color, spec.antialias, chars, starts, ends, xs, baselines,
+                    widths, metrics));
+            return cursor;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.lhk.poster;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 模板中的一个图层（解析结果，与画布尺寸无关）
+ * <p>
+ * 颜色和静态素材在解析时即解析完成；字体只校验声明，在 {@link RenderPlan} 编译时按当时已加载的字体解析，
+ * 之后加载的字体对重新编译的计划生效。
+ */
+final class TemplateLayer {
+
+    enum Type {
+        IMAGE, TEXT
+    }
+
+    /**
+     * 锚点：图层坐标相对于画布的哪个角；FLOW 表示接在上一个流式图层下方，y 为与上一个流式图层的间距
+     */
+    enum Anchor {
+        TOP_LEFT, TOP_RIGHT, BOTTOM_LEFT, BOTTOM_RIGHT, FLOW;
+
+        boolean isRight() {
+            return this == TOP_RIGHT || this == BOTTOM_RIGHT;
+        }
+
+        boolean isBottom() {
+            return this == BOTTOM_LEFT || this == BOTTOM_RIGHT;
+        }
+    }
+
+    final Type type;
+    final String slot;
+    final Anchor anchor;
+    final TemplateLength x;
+    final TemplateLength y;
+    /**
+     * 右边距，文本图层为换行宽度的右边界，图片图层用于撑满宽度；为空时文本图层取与 x 相同的值
+     */
+    final TemplateLength right;
+    /**
+     * 固定宽高，为空时按原图或等比计算
+     */
+    final Integer width;
+    final Integer height;
+    final boolean optional;
+
+    /**
+     * 图片图层：静态素材（src）或插槽缺省素材（default）
+     */
+    final BufferedImage image;
+    /**
+     * 图片图层引用的素材资源路径，可能为空
+     */
+    final String asset;
+
+    /**
+     * 文本图层：固定文本（text），以及字体声明、颜色
+     */
+    final String text;
+    final int fontStyle;
+    final int fontSize;
+    /**
+     * 模板声明的字体族，为空时使用默认字体族
+     */
+    final List<String> fontFamilies;
+    final Color color;
+    final boolean antialias;
+
+    private TemplateLayer(Map<String, Object> map) {
+        this.type = parseEnum(Type.class, map.get("type"), null);
+        if (type == null) {
+            throw new IllegalArgumentException("图层缺少 type: " + map);
+        }
+        this.slot = stringValue(map.get("slot"));
+        this.anchor = parseEnum(Anchor.class, map.get("anchor"), Anchor.TOP_LEFT);
+        this.x = orZero(TemplateLength.parse(map.get("x")));
+        this.y = orZero(TemplateLength.parse(map.get("y")));
+        this.right = TemplateLength.parse(map.get("right"));
+        this.width = intValue(map.get("width"));
+        this.height = intValue(map.get("height"));
+        this.optional = Boolean.TRUE.equals(map.get("optional"));
+
+        if (type == Type.IMAGE) {
+            String src = stringValue(map.get("src"));
+            if (src == null && slot == null) {
+                throw new IllegalArgumentException("图片图层需要 slot 或 src: " + map);
+            }
+            String resource = src != null ? src : stringValue(map.get("default"));
+            this.asset = resource;
+            this.image = resource == null ? null : loadAsset(resource);
+            this.text = null;
+            this.fontStyle = Font.PLAIN;
+            this.fontSize = 0;
+            this.fontFamilies = null;
+            this.color = null;
+            this.antialias = false;
+        } else {
+            this.text = stringValue(map.get("text"));
+            if (text == null && slot == null) {
+                throw new IllegalArgumentException("文本图层需要 slot 或 text: " + map);
+            }
+            this.image = null;
+            this.asset = null;
+            Map<?, ?> font = parseFont(map.get("font"));
+            this.fontStyle = parseStyle(stringValue(font.get("style")));
+            this.fontSize = intValue(font.get("size"));
+            this.fontFamilies = parseFamilies(font.get("family"));
+            this.color = parseColor(map.get("color"));
+            this.antialias = !Boolean.FALSE.equals(map.get("antialias"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static TemplateLayer parse(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("图层必须是对象: " + value);
+        }
+        return new TemplateLayer((Map<String, Object>) value);
+    }
+
+    /**
+     * 是否不依赖渲染数据
+     */
+    boolean isStatic() {
+        return slot == null;
+    }
+
+    /**
+     * 按当前已加载的字体解析文本图层的字体
+     */
+    Font resolveFont() {
+        if (fontFamilies == null) {
+            return FontRegistry.getFont(fontStyle, fontSize);
+        }
+        // 模板声明的字体都不可用时，继续走默认回退链
+        List<String> chain = new ArrayList<>(fontFamilies);
+        chain.addAll(FontRegistry.getFallbackChain());
+        return FontRegistry.getFont(FontRegistry.resolveFamily(chain), fontStyle, fontSize);
+    }
+
+    private static Map<?, ?> parseFont(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("文本图层缺少 font");
+        }
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("font 必须是对象: " + value);
+        }
+        Map<?, ?> map = (Map<?, ?>) value;
+        Integer size = intValue(map.get("size"));
+        if (size == null || size <= 0) {
+            throw new IllegalArgumentException("font.size 无效: " + map);
+        }
+        return map;
+    }
+
+    private static List<String> parseFamilies(Object family) {
+        if (family == null) {
+            return null;
+        }
+        List<String> families = new ArrayList<>();
+        if (family instanceof List) {
+            for (Object item : (List<?>) family) {
+                families.add(item.toString());
+            }
+        } else {
+            families.add(family.toString());
+        }
+        return Collections.unmodifiableList(families);
+    }
+
+    private static int parseStyle(String style) {
+        if (style == null) {
+            return Font.PLAIN;
+        }
+        switch (style.toLowerCase(Locale.ROOT)) {
+            case "plain":
+                return Font.PLAIN;
+            case "bold":
+                return Font.BOLD;
+            case "italic":
+                return Font.ITALIC;
+            case "bold-italic":
+                return Font.BOLD | Font.ITALIC;
+            default:
+                throw new IllegalArgumentException("未知的字体样式: " + style);
+        }
+    }
+
+    /**
+     * 解析 #RRGGBB 或 #AARRGGBB
+     */
+    private static Color parseColor(Object value) {
+        String text = stringValue(value);
+        if (text == null) {
+            return Color.BLACK;
+        }
+        String hex = text.startsWith("#") ? text.substring(1) : text;
+        if (hex.length() != 6 && hex.length() != 8) {
+            throw new IllegalArgumentException("无法解析颜色: " + text);
+        }
+        try {
+            return new Color((int) Long.parseLong(hex, 16), hex.length() == 8);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无法解析颜色: " + text, e);
+        }
+    }
+
+    private static BufferedImage loadAsset(String resource) {
+        try {
+            return AssetCache.get(resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException("模板素材加载失败: " + resource, e);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, Object value, E defaultValue) {
+        String text = stringValue(value);
+        if (text == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, text.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("未知的 " + type.getSimpleName().toLowerCase(Locale.ROOT) + ": " + text, e);
+        }
+    }
+
+    private static TemplateLength orZero(TemplateLength length) {
+        return length == null ? TemplateLength.ZERO : length;
+    }
+
+    static Integer intValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return Integer.valueOf(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无法解析整数: " + value, e);
+        }
+    }
+
+    static String stringValue(Object value) {
+        return value == null || StringUtils.isEmpty(value.toString()) ? null : value.toString();
+    }
+}
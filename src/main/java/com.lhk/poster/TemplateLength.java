@@ -0,0 +1,91 @@
+package com.lhk.poster;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 模板中的长度
+ * <p>
+ * 可以是纯数字（像素），也可以是带单位的线性组合，例如 "25+2lh"、"25+desc"。单位：
+ * <ul>
+ *     <li>px：像素（默认）；</li>
+ *     <li>lh：所在图层字体的行高；</li>
+ *     <li>asc / desc：所在图层字体的上升 / 下降。</li>
+ * </ul>
+ * 字体相关的单位在编译渲染计划时按解析出的字体换算成像素，渲染时不再计算。
+ */
+final class TemplateLength {
+
+    static final TemplateLength ZERO = new TemplateLength(0, 0, 0, 0);
+
+    private static final Pattern TERM = Pattern.compile("\\s*([+-])?\\s*(\\d+)?\\s*(px|lh|asc|desc)?\\s*");
+
+    private final int px;
+    private final int lineHeights;
+    private final int ascents;
+    private final int descents;
+
+    private TemplateLength(int px, int lineHeights, int ascents, int descents) {
+        this.px = px;
+        this.lineHeights = lineHeights;
+        this.ascents = ascents;
+        this.descents = descents;
+    }
+
+    static TemplateLength parse(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return new TemplateLength(((Number) value).intValue(), 0, 0, 0);
+        }
+        String text = value.toString();
+        int px = 0, lineHeights = 0, ascents = 0, descents = 0;
+        Matcher matcher = TERM.matcher(text);
+        int position = 0;
+        while (position < text.length()) {
+            if (!matcher.find(position) || matcher.start() != position || matcher.end() == position
+                    || (matcher.group(2) == null && matcher.group(3) == null)
+                    || (position > 0 && matcher.group(1) == null)) {
+                throw new IllegalArgumentException("无法解析模板长度: " + text);
+            }
+            int sign = "-".equals(matcher.group(1)) ? -1 : 1;
+            int amount = sign * (matcher.group(2) == null ? 1 : Integer.parseInt(matcher.group(2)));
+            String unit = matcher.group(3) == null ? "px" : matcher.group(3);
+            switch (unit) {
+                case "lh":
+                    lineHeights += amount;
+                    break;
+                case "asc":
+                    ascents += amount;
+                    break;
+                case "desc":
+                    descents += amount;
+                    break;
+                default:
+                    px += amount;
+            }
+            position = matcher.end();
+        }
+        return new TemplateLength(px, lineHeights, ascents, descents);
+    }
+
+    boolean isFontRelative() {
+        return lineHeights != 0 || ascents != 0 || descents != 0;
+    }
+
+    /**
+     * 换算成像素
+     *
+     * @param metrics 所在图层的字体度量，非文本图层传 null
+     */
+    int resolve(FontMetricsTable metrics) {
+        if (metrics == null) {
+            if (isFontRelative()) {
+                throw new IllegalArgumentException("非文本图层不能使用字体相关的长度单位");
+            }
+            return px;
+        }
+        return px + lineHeights * metrics.getHeight() + ascents * metrics.getAscent() + descents * metrics.getDescent();
+    }
+}
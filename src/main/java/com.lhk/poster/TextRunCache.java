@@ -0,0 +1,318 @@
+package com.lhk.poster;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文本行的排版与栅格化缓存
+ * <p>
+ * 普通的中日韩文字和拉丁字母，drawChars 只做逐字查表，字形图像由 JDK 按字体和字号缓存，不需要再缓存。
+ * 开销集中在另外两类文本上，这里只缓存这两类：
+ * <ul>
+ *     <li>需要复杂排版的文本行（组合附加符号、双向文本、印度系和东南亚文字等，判断规则与 JDK 一致）：
+ *     drawChars 每次都新建 {@link TextLayout} 排版，这里按 (字体, FontRenderContext, 文本) 缓存排好的 TextLayout；</li>
+ *     <li>印刷尺寸的大字号（不小于 {@link #SPRITE_MIN_SIZE} 像素）：JDK 不缓存这类字形图像，每次按轮廓填充，
+ *     这里再按颜色把整行预先栅格化为预乘 ARGB 精灵，重复的文本行只需一次 drawImage（SrcOver 合成）。</li>
+ * </ul>
+ * FontRenderContext 取自当前的 Graphics2D，包含抗锯齿、小数度量和除平移外的变换，与 drawChars 内部使用的一致，
+ * 精灵只在不透明纯色、SrcOver 合成、无缩放旋转变换时使用，两条路径的输出都与 drawChars 逐像素相同。
+ * <p>
+ * 缓存的排版结果和精灵被所有线程共享，只在创建时写入。
+ */
+public final class TextRunCache {
+
+    /**
+     * 默认缓存的排版结果数
+     */
+    public static final int DEFAULT_MAX_LAYOUTS = 1024;
+    /**
+     * 默认精灵字节预算
+     */
+    public static final long DEFAULT_MAX_SPRITE_BYTES = 16L * 1024 * 1024;
+    /**
+     * 使用精灵的最小字号（像素），与 JDK 改用轮廓绘制文字的阈值一致
+     */
+    public static final int SPRITE_MIN_SIZE = 100;
+
+    private static volatile TextRunCache defaultInstance = new TextRunCache(DEFAULT_MAX_LAYOUTS, DEFAULT_MAX_SPRITE_BYTES);
+
+    private final int maxLayouts;
+    private final long maxSpriteBytes;
+    private final LinkedHashMap<Key, TextLayout> layouts = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<Key, Sprite> sprites = new LinkedHashMap<>(64, 0.75f, true);
+    private long spriteBytes;
+
+    private final AtomicLong layoutHits = new AtomicLong();
+    private final AtomicLong layoutMisses = new AtomicLong();
+    private final AtomicLong spriteHits = new AtomicLong();
+    private final AtomicLong spriteMisses = new AtomicLong();
+
+    /**
+     * @param maxLayouts 缓存的排版结果数，0 表示不缓存
+     * @param maxSpriteBytes 精灵占用的字节数上限，0 表示不使用精灵
+     */
+    public TextRunCache(int maxLayouts, long maxSpriteBytes) {
+        if (maxLayouts < 0 || maxSpriteBytes < 0) {
+            throw new IllegalArgumentException("文本缓存容量不能为负数");
+        }
+        this.maxLayouts = maxLayouts;
+        this.maxSpriteBytes = maxSpriteBytes;
+    }
+
+    /**
+     * 全局共享的缓存，模板文本图层和 PosterUtil 默认使用该实例
+     */
+    public static TextRunCache getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 替换全局共享的缓存，例如调整容量或关闭精灵
+     */
+    public static void setDefault(TextRunCache cache) {
+        defaultInstance = Objects.requireNonNull(cache);
+    }
+
+    /**
+     * 以 Graphics2D 当前的字体、颜色和提示绘制字符区间，等价于 {@link Graphics2D#drawChars(char[], int, int, int, int)}
+     */
+    public void drawChars(Graphics2D graphics2d, char[] chars, int offset, int length, int x, int y) {
+        if (length <= 0) {
+            return;
+        }
+        Font font = graphics2d.getFont();
+        boolean complex = font.hasLayoutAttributes() || isComplexText(chars, offset, offset + length);
+        FontRenderContext frc = graphics2d.getFontRenderContext();
+        if (useSprite(graphics2d, font, frc)) {
+            Key key = new Key(font, frc, new String(chars, offset, length), (Color) graphics2d.getPaint());
+            Sprite sprite = getSprite(key, complex);
+            graphics2d.drawImage(sprite.image, x + sprite.x, y + sprite.y, null);
+        } else if (complex && maxLayouts > 0) {
+            getLayout(new Key(font, frc, new String(chars, offset, length), null)).draw(graphics2d, x, y);
+        } else {
+            graphics2d.drawChars(chars, offset, length, x, y);
+        }
+    }
+
+    /**
+     * 以 Graphics2D 当前的字体、颜色和提示绘制文本，等价于 {@link Graphics2D#drawString(String, int, int)}
+     */
+    public void drawString(Graphics2D graphics2d, String text, int x, int y) {
+        drawChars(graphics2d, text.toCharArray(), 0, text.length(), x, y);
+    }
+
+    public synchronized void clear() {
+        layouts.clear();
+        sprites.clear();
+        spriteBytes = 0;
+    }
+
+    public long getHitCount() {
+        return layoutHits.get();
+    }
+
+    public long getMissCount() {
+        return layoutMisses.get();
+    }
+
+    public long getSpriteHitCount() {
+        return spriteHits.get();
+    }
+
+    public long getSpriteMissCount() {
+        return spriteMisses.get();
+    }
+
+    public synchronized int getLayoutCount() {
+        return layouts.size();
+    }
+
+    /**
+     * 精灵占用的像素内存（字节）
+     */
+    public synchronized long getSpriteBytes() {
+        return spriteBytes;
+    }
+
+    private boolean useSprite(Graphics2D graphics2d, Font font, FontRenderContext frc) {
+        if (maxSpriteBytes == 0 || font.getSize2D() < SPRITE_MIN_SIZE || frc.isTransformed()) {
+            return false;
+        }
+        Paint paint = graphics2d.getPaint();
+        return paint instanceof Color && ((Color) paint).getAlpha() == 255
+                && AlphaComposite.SrcOver.equals(graphics2d.getComposite());
+    }
+
+    private TextLayout getLayout(Key key) {
+        synchronized (this) {
+            TextLayout layout = layouts.get(key);
+            if (layout != null) {
+                layoutHits.incrementAndGet();
+                return layout;
+            }
+        }
+        layoutMisses.incrementAndGet();
+        TextLayout layout = new TextLayout(key.text, key.font, key.frc);
+        // 提前计算像素边界，之后共享的实例只被读取
+        layout.getPixelBounds(key.frc, 0, 0);
+        if (maxLayouts == 0) {
+            return layout;
+        }
+        synchronized (this) {
+            TextLayout existing = layouts.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            layouts.put(key, layout);
+            Iterator<TextLayout> iterator = layouts.values().iterator();
+            while (layouts.size() > maxLayouts && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return layout;
+    }
+
+    private Sprite getSprite(Key key, boolean complex) {
+        synchronized (this) {
+            Sprite sprite = sprites.get(key);
+            if (sprite != null) {
+                spriteHits.incrementAndGet();
+                return sprite;
+            }
+        }
+        spriteMisses.incrementAndGet();
+        Sprite sprite = rasterize(key, complex ? getLayout(new Key(key.font, key.frc, key.text, null)) : null);
+        long size = PosterMetrics.bytesOf(sprite.image);
+        if (size > maxSpriteBytes) {
+            return sprite;
+        }
+        synchronized (this) {
+            Sprite existing = sprites.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            sprites.put(key, sprite);
+            spriteBytes += size;
+            Iterator<Map.Entry<Key, Sprite>> iterator = sprites.entrySet().iterator();
+            while (spriteBytes > maxSpriteBytes && iterator.hasNext()) {
+                spriteBytes -= PosterMetrics.bytesOf(iterator.next().getValue().image);
+                iterator.remove();
+            }
+        }
+        return sprite;
+    }
+
+    /**
+     * 按 frc 的提示把整行绘制到透明画布上，四周多留 1 像素；透明像素 SrcOver 合成时不改变目标
+     */
+    private static Sprite rasterize(Key key, TextLayout layout) {
+        Rectangle bounds = layout != null ? layout.getPixelBounds(key.frc, 0, 0)
+                : key.font.createGlyphVector(key.frc, key.text).getPixelBounds(key.frc, 0, 0);
+        bounds.grow(1, 1);
+        BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics2d = image.createGraphics();
+        try {
+            graphics2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, key.frc.getAntiAliasingHint());
+            graphics2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, key.frc.getFractionalMetricsHint());
+            graphics2d.setFont(key.font);
+            graphics2d.setColor(key.color);
+            if (layout != null) {
+                layout.draw(graphics2d, -bounds.x, -bounds.y);
+            } else {
+                graphics2d.drawString(key.text, -bounds.x, -bounds.y);
+            }
+        } finally {
+            graphics2d.dispose();
+        }
+        return new Sprite(image, bounds.x, bounds.y);
+    }
+
+    /**
+     * 是否包含 drawChars 会交给 TextLayout 排版的字符（与 JDK 的判断一致）：组合附加符号、希伯来文和阿拉伯文、
+     * 印度系文字和泰文、藏文、缅甸文、古谚文字母、高棉文、零宽连接符、双向控制符以及代理对
+     */
+    private static boolean isComplexText(char[] chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c < 0x0300) {
+                continue;
+            }
+            if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                return true;
+            }
+            if (c > 0x206F) {
+                continue;
+            }
+            if (c <= 0x036F || (c >= 0x0590 && c <= 0x06FF) || (c >= 0x0900 && c <= 0x0E7F)
+                    || (c >= 0x0F00 && c <= 0x109F) || (c >= 0x1100 && c < 0x11FF) || (c >= 0x1780 && c <= 0x17FF)
+                    || c == 0x200C || c == 0x200D || (c >= 0x202A && c <= 0x202E) || c >= 0x206A) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 预先栅格化的文本行，(x, y) 是图片左上角相对于基线起点的偏移
+     */
+    private static final class Sprite {
+        private final BufferedImage image;
+        private final int x;
+        private final int y;
+
+        Sprite(BufferedImage image, int x, int y) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static final class Key {
+        private final Font font;
+        private final FontRenderContext frc;
+        private final String text;
+        /**
+         * 精灵的颜色，排版结果为空
+         */
+        private final Color color;
+
+        Key(Font font, FontRenderContext frc, String text, Color color) {
+            this.font = font;
+            this.frc = frc;
+            this.text = text;
+            this.color = color;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return text.equals(key.text) && font.equals(key.font) && frc.equals(key.frc)
+                    && Objects.equals(color, key.color);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, frc, text, color);
+        }
+    }
+}
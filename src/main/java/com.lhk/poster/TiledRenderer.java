@@ -0,0 +1,163 @@
+package com.lhk.poster;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 分块并行绘制
+ * <p>
+ * 印刷尺寸的海报（例如 4000x6000）在单个 Graphics2D 上绘制时只用到一个核。像素数达到阈值的画布按水平条带切分，
+ * 每个条带在 ForkJoinPool 上使用独立的 Graphics2D：以条带为目标的子图，平移到条带在画布中的位置，
+ * 只重放与条带相交的 {@link DrawOp}（按操作自身的保守边界判断）。各条带写入画布中互不重叠的行，
+ * 操作在条带内仍按原顺序绘制，且只做整数平移，结果与顺序绘制逐像素一致。
+ * <p>
+ * 普通尺寸的海报低于阈值，仍在调用线程上顺序绘制，没有任务调度的开销。
+ */
+public final class TiledRenderer {
+
+    /**
+     * 默认并行绘制阈值：800 万像素
+     */
+    public static final long DEFAULT_MIN_PIXELS = 8_000_000L;
+    /**
+     * 默认条带高度
+     */
+    public static final int DEFAULT_BAND_HEIGHT = 256;
+
+    private static volatile TiledRenderer defaultInstance =
+            new TiledRenderer(DEFAULT_MIN_PIXELS, DEFAULT_BAND_HEIGHT, ForkJoinPool.commonPool());
+
+    private final long minPixels;
+    private final int bandHeight;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param minPixels 画布像素数达到该值时分块并行绘制，小于等于0时总是顺序绘制
+     * @param bandHeight 条带高度
+     * @param pool 绘制条带的线程池
+     */
+    public TiledRenderer(long minPixels, int bandHeight, ForkJoinPool pool) {
+        if (bandHeight <= 0) {
+            throw new IllegalArgumentException("条带高度必须大于0");
+        }
+        this.minPixels = minPixels;
+        this.bandHeight = bandHeight;
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    /**
+     * 全局共享的实例，{@link PosterTemplate}、{@link RenderPlan} 绘制时使用，默认使用公共 ForkJoinPool
+     */
+    public static TiledRenderer getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 替换全局共享的实例，例如调整阈值或使用专用线程池
+     */
+    public static void setDefault(TiledRenderer renderer) {
+        defaultInstance = Objects.requireNonNull(renderer);
+    }
+
+    public long getMinPixels() {
+        return minPixels;
+    }
+
+    public int getBandHeight() {
+        return bandHeight;
+    }
+
+    /**
+     * 该画布是否分块并行绘制
+     */
+    public boolean isTiled(BufferedImage canvas) {
+        return minPixels > 0 && pool.getParallelism() > 1
+                && (long) canvas.getWidth() * canvas.getHeight() >= minPixels
+                && canvas.getHeight() > bandHeight;
+    }
+
+    /**
+     * 按顺序把绘制操作画到画布上，大画布分块并行
+     */
+    public void draw(BufferedImage canvas, List<DrawOp> ops) {
+        if (ops.isEmpty()) {
+            return;
+        }
+        if (!isTiled(canvas)) {
+            Graphics2D graphics2d = canvas.createGraphics();
+            try {
+                for (DrawOp op : ops) {
+                    op.draw(graphics2d);
+                }
+            } finally {
+                graphics2d.dispose();
+            }
+            return;
+        }
+
+        List<Rectangle> bounds = new ArrayList<>(ops.size());
+        for (DrawOp op : ops) {
+            bounds.add(op.getBounds());
+        }
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        List<Callable<Void>> bands = new ArrayList<>((height + bandHeight - 1) / bandHeight);
+        for (int top = 0; top < height; top += bandHeight) {
+            Rectangle band = new Rectangle(0, top, width, Math.min(bandHeight, height - top));
+            List<DrawOp> bandOps = new ArrayList<>(ops.size());
+            for (int i = 0; i < ops.size(); i++) {
+                if (bounds.get(i).intersects(band)) {
+                    bandOps.add(ops.get(i));
+                }
+            }
+            if (!bandOps.isEmpty()) {
+                bands.add(() -> {
+                    drawBand(canvas, band, bandOps);
+                    return null;
+                });
+            }
+        }
+        join(pool.invokeAll(bands));
+    }
+
+    private static void drawBand(BufferedImage canvas, Rectangle band, List<DrawOp> ops) {
+        // 子图与画布共享栅格，坐标原点在条带左上角，超出条带的像素被裁掉
+        Graphics2D graphics2d = canvas.getSubimage(band.x, band.y, band.width, band.height).createGraphics();
+        try {
+            graphics2d.translate(-band.x, -band.y);
+            for (DrawOp op : ops) {
+                op.draw(graphics2d);
+            }
+        } finally {
+            graphics2d.dispose();
+        }
+    }
+
+    private static void join(List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待条带绘制时线程被中断", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("条带绘制失败", cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.lhk.poster.boot;
+
+import com.lhk.poster.CanvasPool;
+import com.lhk.poster.CoverDecoder;
+import com.lhk.poster.DiskCache;
+import com.lhk.poster.FontRegistry;
+import com.lhk.poster.ImageEncoder;
+import com.lhk.poster.ImageFetcher;
+import com.lhk.poster.PixelBudget;
+import com.lhk.poster.PosterEngine;
+import com.lhk.poster.PosterResultCache;
+import com.lhk.poster.PosterService;
+import com.lhk.poster.RemoteImageCache;
+import com.lhk.poster.TextRunCache;
+import com.lhk.poster.TiledRenderer;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+/**
+ * 海报生成自动配置
+ * <p>
+ * 先加载类路径 fonts/ 和 lhk.poster.fonts.directory 下的字体，再注册 {@link PosterService}，并把按 lhk.poster 配置创建的解码器、像素内存预算、画布池、封面缓存和结果缓存设为全局实例，
+ * 使 PosterUtil 等静态入口与服务使用同一份配置和缓存。
+ * 所有组件就绪后以 {@link PosterEngine#warmUp(ImageEncoder)} 预热，应用为 WebFlux 应用时额外注册海报接口，见 {@link PosterHandler}。
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(PosterProperties.class)
+public class PosterAutoConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(PosterAutoConfiguration.class);
+
+    /**
+     * 在创建任何海报组件之前加载字体，之后解析的模板和创建的字体都使用已加载的字体
+     *
+     * @throws IOException 字体文件读取失败
+     * @throws IllegalStateException 严格模式下没有可用的已加载字体
+     */
+    public PosterAutoConfiguration(PosterProperties properties) throws IOException {
+        PosterProperties.Fonts config = properties.getFonts();
+        if (!GraphicsEnvironment.isHeadless()) {
+            logger.warn("当前不是 headless 模式，建议以 -Djava.awt.headless=true 启动渲染节点");
+        }
+        FontRegistry.setStrict(config.isStrict());
+        FontRegistry.loadClasspathFonts();
+        if (StringUtils.isNotEmpty(config.getDirectory())) {
+            FontRegistry.loadFonts(Paths.get(config.getDirectory()));
+        }
+        logger.info("海报默认字体: {}", FontRegistry.getDefaultFamily());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CoverDecoder posterCoverDecoder(PosterProperties properties) {
+        CoverDecoder decoder = new CoverDecoder(properties.getDecoder().getMaxPixels());
+        CoverDecoder.setDefault(decoder);
+        return decoder;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public PixelBudget posterPixelBudget(PosterProperties properties) {
+        PosterProperties.Admission config = properties.getAdmission();
+        PixelBudget budget = new PixelBudget(config.getMaxBytes(), config.getTimeout().toMillis());
+        PixelBudget.setDefault(budget);
+        return budget;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CanvasPool posterCanvasPool(PosterProperties properties) {
+        CanvasPool pool = new CanvasPool(properties.getCanvasPool().getMaxBytes());
+        CanvasPool.setDefault(pool);
+        return pool;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public TiledRenderer posterTiledRenderer(PosterProperties properties) {
+        PosterProperties.Tiling config = properties.getTiling();
+        TiledRenderer renderer = new TiledRenderer(config.getMinPixels(), config.getBandHeight(), ForkJoinPool.commonPool());
+        TiledRenderer.setDefault(renderer);
+        return renderer;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public TextRunCache posterTextRunCache(PosterProperties properties) {
+        PosterProperties.TextCache config = properties.getTextCache();
+        TextRunCache cache = new TextRunCache(config.getMaxLayouts(), config.getSpriteMaxBytes());
+        TextRunCache.setDefault(cache);
+        return cache;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RemoteImageCache posterImageCache(PosterProperties properties) {
+        PosterProperties.CoverCache config = properties.getCoverCache();
+        RemoteImageCache cache = new RemoteImageCache(ImageFetcher.getDefault(), config.getMaxPixels(),
+                config.getTtl().toMillis(), null);
+        RemoteImageCache.setDefault(cache);
+        return cache;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "lhk.poster.result-cache", name = "enabled", matchIfMissing = true)
+    public PosterResultCache posterResultCache(PosterProperties properties) throws IOException {
+        PosterProperties.ResultCache config = properties.getResultCache();
+        DiskCache diskCache = StringUtils.isEmpty(config.getDiskDirectory()) ? null
+                : new DiskCache(Paths.get(config.getDiskDirectory()), config.getDiskMaxBytes());
+        PosterResultCache cache = new PosterResultCache(config.getMaxBytes(), config.getTtl().toMillis(), diskCache);
+        PosterResultCache.setDefault(cache);
+        return cache;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ImageEncoder posterImageEncoder(PosterProperties properties) {
+        PosterProperties.Encoder config = properties.getEncoder();
+        return ImageEncoder.builder()
+                .format(config.getFormat())
+                .quality(config.getQuality())
+                .progressive(config.isProgressive())
+                .chromaSubsampling(config.getChromaSubsampling())
+                .stripMetadata(config.isStripMetadata())
+                .paletteSize(config.getPaletteSize())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public PosterService posterService(PosterProperties properties, RemoteImageCache imageCache, ImageEncoder encoder,
+                                       ObjectProvider<PosterResultCache> resultCache) {
+        return new PosterService(imageCache, encoder, properties.getRenderThreads(), properties.getMaxInFlight(),
+                resultCache.getIfAvailable());
+    }
+
+    /**
+     * 所有组件创建完成、设为全局实例之后，Web 服务开始接收请求之前预热
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "lhk.poster.warm-up", name = "enabled", matchIfMissing = true)
+    public SmartInitializingSingleton posterWarmUp(ImageEncoder encoder) {
+        return () -> {
+            try {
+                PosterEngine.warmUp(encoder);
+            } catch (IOException e) {
+                throw new UncheckedIOException("海报引擎预热失败: " + e.getMessage(), e);
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "lhk.poster.warm-up", name = "exit")
+    public ApplicationListener<ApplicationReadyEvent> posterWarmUpExit() {
+        return event -> {
+            logger.info("应用已就绪，按 lhk.poster.warm-up.exit 退出");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        };
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(RouterFunction.class)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    @ConditionalOnProperty(prefix = "lhk.poster.web", name = "enabled")
+    static class WebFluxConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public PosterHandler posterHandler(PosterService posterService, PosterProperties properties) {
+            PosterProperties.Web web = properties.getWeb();
+            if (web.getAllowedHosts().isEmpty()) {
+                logger.warn("lhk.poster.web.allowed-hosts 未配置，海报接口将拒绝所有封面");
+            }
+            return new PosterHandler(posterService, web.getAllowedSchemes(), web.getAllowedHosts());
+        }
+
+        @Bean
+        public RouterFunction<ServerResponse> posterRouterFunction(PosterProperties properties, PosterHandler handler) {
+            return RouterFunctions.route(GET(properties.getWeb().getPath()), handler::render);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.lhk.poster.boot;
+
+import com.lhk.poster.CoverDecoder;
+import com.lhk.poster.PosterResultCache;
+import com.lhk.poster.PosterService;
+import com.lhk.poster.PosterSpec;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * WebFlux 海报接口：GET {path}?cover=封面URL&amp;zh=中文&amp;en=英文&amp;qr=二维码内容
+ * <p>
+ * 封面下载在 I/O 线程上进行，解码、绘制和编码在 {@link PosterService} 的有界渲染线程池上执行，
+ * 编码器直接写入响应的 DataBuffer，事件循环线程不等待任何下载或渲染。
+ * 启用结果缓存时改为返回缓存的编码结果并带 ETag，请求的 If-None-Match 命中未过期的条目时直接返回 304。
+ * 接口只下载协议和主机在白名单内的封面，防止借接口访问内网地址；不在白名单内的封面返回 403。
+ * 错误映射：参数错误 400、封面像素超出预算 413、封面下载失败 502、在途数已满 503。
+ */
+public class PosterHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PosterHandler.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    private final PosterService posterService;
+    private final MediaType mediaType;
+    private final Set<String> allowedSchemes = new HashSet<>();
+    private final List<String> allowedHosts = new ArrayList<>();
+
+    /**
+     * @param allowedSchemes 允许的封面 URL 协议
+     * @param allowedHosts 允许的封面主机，精确匹配或以 "*." 开头匹配其子域名；为空时拒绝所有封面
+     */
+    public PosterHandler(PosterService posterService, Collection<String> allowedSchemes, Collection<String> allowedHosts) {
+        this.posterService = posterService;
+        this.mediaType = MediaType.parseMediaType(posterService.getEncoder().getEffectiveFormat().getMimeType());
+        for (String scheme : allowedSchemes) {
+            this.allowedSchemes.add(scheme.trim().toLowerCase(Locale.ROOT));
+        }
+        for (String host : allowedHosts) {
+            this.allowedHosts.add(host.trim().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    public Mono<ServerResponse> render(ServerRequest request) {
+        PosterSpec spec = PosterSpec.builder()
+                .id(request.queryParam("id").orElse(null))
+                .coverUrl(request.queryParam("cover").orElse(null))
+                .zh(request.queryParam("zh").orElse(null))
+                .en(request.queryParam("en").orElse(null))
+                .qrPayload(request.queryParam("qr").orElse(null))
+                .build();
+        // 接口只接受网络封面，不允许读取服务器本地文件
+        if (StringUtils.isEmpty(spec.getCoverUrl())) {
+            return error(HttpStatus.BAD_REQUEST, "缺少参数 cover");
+        }
+        if (!isAllowedCover(spec.getCoverUrl())) {
+            logger.warn("拒绝下载不在白名单内的封面: {}", spec.getCoverUrl());
+            return error(HttpStatus.FORBIDDEN, "封面地址不在允许范围内");
+        }
+        DataBufferFactory bufferFactory = request.exchange().getResponse().bufferFactory();
+        if (posterService.getResultCache() != null) {
+            return renderCached(spec, request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH), bufferFactory)
+                    .onErrorResume(this::handleError);
+        }
+        return encode(spec, bufferFactory)
+                .flatMap(buffer -> ServerResponse.ok()
+                        .contentType(mediaType)
+                        .contentLength(buffer.readableByteCount())
+                        .body(BodyInserters.fromDataBuffers(Mono.just(buffer))))
+                .onErrorResume(this::handleError);
+    }
+
+    /**
+     * 封面 URL 的协议和主机是否在白名单内；按 URI 解析出的主机判断，user-info 等写法无法绕过
+     */
+    boolean isAllowedCover(String coverUrl) {
+        URI uri;
+        try {
+            uri = new URI(coverUrl);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        if (uri.getScheme() == null || uri.getHost() == null
+                || !allowedSchemes.contains(uri.getScheme().toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        for (String allowed : allowedHosts) {
+            if (allowed.startsWith("*.") ? host.endsWith(allowed.substring(1)) : host.equals(allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 缓存命中时不经过渲染线程池；缓存字节直接包装为响应缓冲区，不复制
+     */
+    private Mono<ServerResponse> renderCached(PosterSpec spec, String ifNoneMatch, DataBufferFactory bufferFactory) {
+        return Mono.fromCallable(() -> posterService.cacheKey(spec))
+                .flatMap(key -> {
+                    PosterResultCache.Entry cached = posterService.getResultCache().get(key);
+                    if (cached != null && PosterResultCache.matches(ifNoneMatch, cached.getEtag())) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(cached.getEtag()).build();
+                    }
+                    Mono<PosterResultCache.Entry> entry = cached != null ? Mono.just(cached)
+                            : Mono.fromFuture(posterService.renderCachedAsync(spec));
+                    return entry.flatMap(result -> ServerResponse.ok()
+                            .contentType(mediaType)
+                            .contentLength(result.getBytes().length)
+                            .eTag(result.getEtag())
+                            .body(BodyInserters.fromDataBuffers(Mono.just(bufferFactory.wrap(result.getBytes())))));
+                });
+    }
+
+    /**
+     * 在渲染线程上把海报编码进响应缓冲区
+     */
+    private Mono<DataBuffer> encode(PosterSpec spec, DataBufferFactory bufferFactory) {
+        return Mono.defer(() -> {
+            DataBuffer buffer = bufferFactory.allocateBuffer(INITIAL_BUFFER_SIZE);
+            CompletableFuture<Void> rendered;
+            try {
+                rendered = posterService.renderAsync(spec, buffer.asOutputStream());
+            } catch (RuntimeException e) {
+                DataBufferUtils.release(buffer);
+                return Mono.error(e);
+            }
+            // 取消订阅只作用于派生的 future，渲染线程写完缓冲区后才释放
+            return Mono.fromFuture(rendered.thenApply(ignored -> buffer))
+                    .doOnError(e -> DataBufferUtils.release(buffer))
+                    .doOnCancel(() -> rendered.whenComplete((ignored, e) -> DataBufferUtils.release(buffer)));
+        });
+    }
+
+    private Mono<ServerResponse> handleError(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof CoverDecoder.ImageTooLargeException) {
+            return error(HttpStatus.PAYLOAD_TOO_LARGE, cause.getMessage());
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, cause.getMessage());
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return error(HttpStatus.BAD_REQUEST, cause.getMessage());
+        }
+        if (cause instanceof IOException) {
+            logger.warn("海报生成失败: {}", cause.getMessage());
+            return error(HttpStatus.BAD_GATEWAY, cause.getMessage());
+        }
+        logger.error("海报生成失败: {}", cause.getMessage(), cause);
+        return error(HttpStatus.INTERNAL_SERVER_ERROR, "海报生成失败");
+    }
+
+    private static Mono<ServerResponse> error(HttpStatus status, String message) {
+        return ServerResponse.status(status)
+                .contentType(TEXT_PLAIN_UTF8)
+                .bodyValue(message != null ? message : status.getReasonPhrase());
+    }
+}
@@ -0,0 +1,211 @@
+package com.lhk.poster.boot;
+
+import com.lhk.poster.CanvasPool;
+import com.lhk.poster.CoverDecoder;
+import com.lhk.poster.ImageEncoder;
+import com.lhk.poster.ImageFormat;
+import com.lhk.poster.PixelBudget;
+import com.lhk.poster.PosterEngine;
+import com.lhk.poster.PosterResultCache;
+import com.lhk.poster.RemoteImageCache;
+import com.lhk.poster.TextRunCache;
+import com.lhk.poster.TiledRenderer;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 海报生成配置，前缀 lhk.poster，例如：
+ * <pre>
+ * lhk.poster.render-threads=4
+ * lhk.poster.max-in-flight=64
+ * lhk.poster.encoder.quality=0.85
+ * lhk.poster.encoder.progressive=true
+ * lhk.poster.cover-cache.max-pixels=33554432
+ * lhk.poster.fonts.directory=/opt/poster/fonts
+ * lhk.poster.fonts.strict=true
+ * lhk.poster.tiling.min-pixels=8000000
+ * lhk.poster.web.enabled=true
+ * lhk.poster.web.path=/poster
+ * lhk.poster.web.allowed-hosts=cdn.example.com,*.img.example.com
+ * </pre>
+ */
+@Data
+@ConfigurationProperties(prefix = "lhk.poster")
+public class PosterProperties {
+
+    /**
+     * 渲染线程数，默认与 CPU 核数相同
+     */
+    private int renderThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * 最大在途海报数（含等待封面下载的），超出时接口返回 503
+     */
+    private int maxInFlight = Runtime.getRuntime().availableProcessors() * 8;
+
+    private final Encoder encoder = new Encoder();
+    private final Decoder decoder = new Decoder();
+    private final CoverCache coverCache = new CoverCache();
+    private final ResultCache resultCache = new ResultCache();
+    private final Admission admission = new Admission();
+    private final CanvasPoolConfig canvasPool = new CanvasPoolConfig();
+    private final Tiling tiling = new Tiling();
+    private final TextCache textCache = new TextCache();
+    private final Fonts fonts = new Fonts();
+    private final WarmUp warmUp = new WarmUp();
+    private final Web web = new Web();
+
+    @Data
+    public static class Encoder {
+        private ImageFormat format = ImageFormat.JPEG;
+        /**
+         * 压缩质量 0 ~ 1，为空时使用编码器默认值
+         */
+        private Float quality;
+        private boolean progressive;
+        private ImageEncoder.ChromaSubsampling chromaSubsampling;
+        private boolean stripMetadata;
+        /**
+         * PNG 调色板颜色数（2 ~ 256），0 表示真彩色
+         */
+        private int paletteSize;
+    }
+
+    @Data
+    public static class Decoder {
+        /**
+         * 封面图像素预算，超出时接口返回 413
+         */
+        private long maxPixels = CoverDecoder.DEFAULT_MAX_PIXELS;
+    }
+
+    @Data
+    public static class CoverCache {
+        /**
+         * 堆内缓存的像素预算
+         */
+        private long maxPixels = RemoteImageCache.DEFAULT_MAX_PIXELS;
+        /**
+         * 缓存有效期，过期后按 ETag / Last-Modified 重新验证
+         */
+        private Duration ttl = Duration.ofMillis(RemoteImageCache.DEFAULT_TTL_MILLIS);
+    }
+
+    @Data
+    public static class ResultCache {
+        /**
+         * 是否缓存生成结果，相同参数的重复请求直接返回缓存并支持 If-None-Match / 304
+         */
+        private boolean enabled = true;
+        /**
+         * 堆内字节预算
+         */
+        private long maxBytes = PosterResultCache.DEFAULT_MAX_BYTES;
+        /**
+         * 有效期，网络封面内容的更新在此之后生效
+         */
+        private Duration ttl = Duration.ofMillis(PosterResultCache.DEFAULT_TTL_MILLIS);
+        /**
+         * 磁盘层目录，为空时只使用堆内缓存
+         */
+        private String diskDirectory;
+        /**
+         * 磁盘层字节预算
+         */
+        private long diskMaxBytes = 1024L * 1024 * 1024;
+    }
+
+    @Data
+    public static class Admission {
+        /**
+         * 同时解码可占用的像素内存，默认为最大堆的四分之一
+         */
+        private long maxBytes = Runtime.getRuntime().maxMemory() / 4;
+        /**
+         * 额度不足时的最长等待时间，超时后接口返回 503
+         */
+        private Duration timeout = Duration.ofMillis(PixelBudget.DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    @Data
+    public static class CanvasPoolConfig {
+        /**
+         * 池中空闲画布的总字节数上限，0 表示不复用
+         */
+        private long maxBytes = CanvasPool.DEFAULT_MAX_BYTES;
+    }
+
+    @Data
+    public static class Tiling {
+        /**
+         * 画布像素数达到该值时分块并行绘制，0 表示总是顺序绘制
+         */
+        private long minPixels = TiledRenderer.DEFAULT_MIN_PIXELS;
+        /**
+         * 条带高度
+         */
+        private int bandHeight = TiledRenderer.DEFAULT_BAND_HEIGHT;
+    }
+
+    @Data
+    public static class TextCache {
+        /**
+         * 缓存的复杂文字排版结果数，0 表示不缓存
+         */
+        private int maxLayouts = TextRunCache.DEFAULT_MAX_LAYOUTS;
+        /**
+         * 预先栅格化的大字号文本行占用的字节数上限，0 表示不使用
+         */
+        private long spriteMaxBytes = TextRunCache.DEFAULT_MAX_SPRITE_BYTES;
+    }
+
+    @Data
+    public static class Fonts {
+        /**
+         * 额外加载其中 TTF / OTF 字体的目录，类路径 fonts/ 下的字体总是加载
+         */
+        private String directory;
+        /**
+         * 严格模式：只使用已加载的字体，没有可用字体时启动失败，而不是回退到系统字体
+         */
+        private boolean strict;
+    }
+
+    @Data
+    public static class WarmUp {
+        /**
+         * 启动时用自带素材合成并编码一张海报，见 {@link PosterEngine}
+         */
+        private boolean enabled = true;
+        /**
+         * 预热完成、应用就绪后退出，用于生成 CDS 归档的训练运行
+         */
+        private boolean exit;
+    }
+
+    @Data
+    public static class Web {
+        /**
+         * 是否注册 WebFlux 海报接口（需要 spring-boot-starter-webflux）。接口会下载请求参数中的封面 URL，
+         * 默认关闭，启用时需同时配置 allowed-hosts
+         */
+        private boolean enabled;
+        /**
+         * 接口路径
+         */
+        private String path = "/poster";
+        /**
+         * 允许的封面 URL 协议
+         */
+        private List<String> allowedSchemes = new ArrayList<>(Arrays.asList("http", "https"));
+        /**
+         * 允许下载封面的主机，精确匹配或以 "*." 开头匹配其子域名；为空时拒绝所有封面。
+         * 应只填写不会重定向到内网地址的 CDN、对象存储等域名
+         */
+        private List<String> allowedHosts = new ArrayList<>();
+    }
+}